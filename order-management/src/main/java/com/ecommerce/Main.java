@@ -1,7 +1,9 @@
 package com.ecommerce;
 
+import com.ecommerce.external.InventorySystem;
 import com.ecommerce.model.*;
 import com.ecommerce.service.*;
+import com.ecommerce.store.InventoryLedger;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -20,7 +22,7 @@ public class Main {
 
         // Test Part 2: Concurrency
         System.out.println("\n=== PART 2: CONCURRENCY ===\n");
-        testOrderProcessor(orders, customers);
+        testOrderProcessor(orders, customers, products);
         testBulkNotifications(customers);
     }
 
@@ -57,25 +59,25 @@ public class Main {
             new Order(1L, 1L, Arrays.asList(
                 new OrderItem(1L, "Laptop Pro", 1, 1299.99),
                 new OrderItem(2L, "Wireless Mouse", 1, 29.99)
-            ), LocalDateTime.now().minusDays(1), "CONFIRMED"),
+            ), LocalDateTime.now().minusDays(1), OrderStatus.CONFIRMED),
             
             new Order(2L, 2L, Arrays.asList(
                 new OrderItem(4L, "Office Chair", 2, 299.99)
-            ), LocalDateTime.now().minusDays(5), "SHIPPED"),
+            ), LocalDateTime.now().minusDays(5), OrderStatus.SHIPPED),
             
             new Order(3L, 3L, Arrays.asList(
                 new OrderItem(6L, "Monitor 27\"", 2, 349.99),
                 new OrderItem(7L, "Keyboard", 1, 79.99)
-            ), LocalDateTime.now().minusHours(2), "PENDING"),
+            ), LocalDateTime.now().minusHours(2), OrderStatus.PENDING),
             
             new Order(4L, 1L, Arrays.asList(
                 new OrderItem(5L, "Standing Desk", 1, 599.99)
-            ), LocalDateTime.now().minusDays(10), "DELIVERED"),
+            ), LocalDateTime.now().minusDays(10), OrderStatus.DELIVERED),
             
             new Order(5L, 5L, Arrays.asList(
                 new OrderItem(1L, "Laptop Pro", 2, 1299.99),
                 new OrderItem(9L, "Webcam HD", 2, 89.99)
-            ), LocalDateTime.now(), "PENDING")
+            ), LocalDateTime.now(), OrderStatus.PENDING)
         );
     }
 
@@ -113,26 +115,33 @@ public class Main {
         System.out.println("Customer 1 orders: " + service.getOrdersByCustomer(1L));
         System.out.println("Recent orders (7 days): " + service.getRecentOrders(7));
         System.out.println("Total revenue: $" + service.getTotalRevenue());
-        System.out.println("Pending orders: " + service.getOrdersByStatus("PENDING"));
+        System.out.println("Pending orders: " + service.getOrdersByStatus(OrderStatus.PENDING));
         System.out.println("Largest order: " + service.getLargestOrder());
         System.out.println("Count by status: " + service.getOrderCountByStatus());
         System.out.println("Average order value: $" + service.getAverageOrderValue());
+        System.out.println("Revenue (7 days): $" + service.getRecentRevenue(7));
     }
 
-    private static void testOrderProcessor(List<Order> orders, List<Customer> customers) {
-        OrderProcessor processor = new OrderProcessor();
-        Order testOrder = orders.get(0);
-        Customer testCustomer = customers.get(0);
+    private static void testOrderProcessor(List<Order> orders, List<Customer> customers,
+                                           List<Product> products) {
+        InventorySystem inventory = new InventorySystem(new InventoryLedger());
+        inventory.stock(products);
+        try (OrderProcessor processor = new OrderProcessor(inventory)) {
+            // Each run claims its order, so the two modes get a pending order each
+            Order sequentialOrder = orders.get(2);
+            Order concurrentOrder = orders.get(4);
 
-        System.out.println("--- Order Processor Tests ---\n");
+            System.out.println("--- Order Processor Tests ---\n");
         
-        System.out.println("Processing order SEQUENTIALLY:");
-        String tracking1 = processor.processOrderSequential(testOrder, testCustomer);
-        System.out.println("Result: " + tracking1 + "\n");
+            System.out.println("Processing order SEQUENTIALLY:");
+            String tracking1 = processor.processOrderSequential(sequentialOrder, customers.get(2));
+            System.out.println("Result: " + tracking1 + "\n");
 
-        System.out.println("Processing order CONCURRENTLY:");
-        String tracking2 = processor.processOrderConcurrent(testOrder, testCustomer);
-        System.out.println("Result: " + tracking2 + "\n");
+            System.out.println("Processing order CONCURRENTLY:");
+            String tracking2 = processor.processOrderConcurrent(concurrentOrder, customers.get(4));
+            System.out.println("Result: " + tracking2 + "\n");
+            System.out.println("Shipping quote cache: " + processor.getShippingQuoteStats() + "\n");
+        }
     }
 
     private static void testBulkNotifications(List<Customer> customers) {
@@ -0,0 +1,112 @@
+package com.ecommerce.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that adapts to the dependency's latency (AIMD).
+ *
+ * Every call that finishes within {@code latencyTargetMillis} without failing
+ * raises the limit by {@code 1 / limit}, so the limit grows by about one per
+ * round of calls. A failed or slow call multiplies the limit by
+ * {@code backoffRatio}. The limit stays within [minLimit, maxLimit].
+ * Calls over the limit are refused rather than queued.
+ */
+public class AdaptiveLimiter {
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final double backoffRatio;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock
+    private double limit;
+    private int inFlight;
+
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit,
+                           long latencyTargetMillis, double backoffRatio) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit
+                || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Invalid adaptive limiter settings");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis);
+        this.backoffRatio = backoffRatio;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * @return false if the limit is reached; otherwise the caller must call {@link #release}
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends a call and feeds its outcome into the limit.
+     */
+    public void release(long durationNanos, boolean failed) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (failed || durationNanos > latencyTargetNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if ((inFlight + 1) * 2 >= limit) {
+                // Only grow while at least half the limit is in use; an idle limit proves nothing
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back a permit whose call was never made; the limit is unchanged.
+     */
+    public void abort() {
+        lock.lock();
+        try {
+            inFlight--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return "AdaptiveLimiter{limit=" + (int) limit + ", inFlight=" + inFlight + "}";
+        } finally {
+            lock.unlock();
+        }
+    }
+}
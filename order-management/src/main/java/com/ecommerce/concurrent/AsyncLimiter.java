@@ -0,0 +1,182 @@
+package com.ecommerce.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Non-blocking concurrency limit. {@link #acquire()} returns a future that
+ * completes once a permit is free; callers chain their work on it instead of
+ * parking a thread, so thousands of waiting tasks cost no threads.
+ *
+ * Permits are handed to waiters in arrival order. The limit can be changed at
+ * runtime; lowering it takes effect as permits are released.
+ *
+ * A waiter's continuation runs on the thread that releases the permit, and it
+ * may release again right away (e.g. when its work completes synchronously).
+ * Releases are therefore drained in a loop by one thread at a time: a release
+ * made while another is being handed out is queued for that loop instead of
+ * recursing, so the stack stays flat however many waiters are chained.
+ */
+public class AsyncLimiter {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    // Guarded by lock
+    private int limit;
+    private int inFlight;
+    // Releases not yet handed out, and whether a thread is handing them out
+    private int pendingReleases;
+    private boolean draining;
+
+    public AsyncLimiter(int limit) {
+        checkLimit(limit);
+        this.limit = limit;
+    }
+
+    /**
+     * Completes when the caller holds a permit; each completed acquire must be
+     * followed by exactly one {@link #release()}. Cancelling a pending acquire
+     * gives up the place in line.
+     */
+    public CompletableFuture<Void> acquire() {
+        lock.lock();
+        try {
+            if (inFlight < limit && waiters.isEmpty()) {
+                inFlight++;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            return waiter;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a permit only if one is free right now.
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight < limit && waiters.isEmpty()) {
+                inFlight++;
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            pendingReleases++;
+            if (draining) {
+                return;
+            }
+            draining = true;
+        } finally {
+            lock.unlock();
+        }
+        while (true) {
+            CompletableFuture<Void> next;
+            lock.lock();
+            try {
+                if (pendingReleases == 0) {
+                    draining = false;
+                    return;
+                }
+                pendingReleases--;
+                if (inFlight > limit || waiters.isEmpty()) {
+                    inFlight--;
+                    continue;
+                }
+                // Hand the permit straight to the next waiter; inFlight is unchanged
+                next = waiters.poll();
+            } finally {
+                lock.unlock();
+            }
+            // Completed outside the lock, since it runs the waiter's continuation
+            if (!next.complete(null)) {
+                // That waiter was cancelled; we still hold the permit, try the next one
+                lock.lock();
+                try {
+                    pendingReleases++;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes the limit; raising it admits waiters right away.
+     */
+    public void setLimit(int newLimit) {
+        checkLimit(newLimit);
+        List<CompletableFuture<Void>> admitted = new ArrayList<>();
+        lock.lock();
+        try {
+            limit = newLimit;
+            while (inFlight < limit && !waiters.isEmpty()) {
+                inFlight++;
+                admitted.add(waiters.poll());
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (CompletableFuture<Void> waiter : admitted) {
+            if (!waiter.complete(null)) {
+                release();
+            }
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return "AsyncLimiter{limit=" + limit + ", inFlight=" + inFlight + ", waiting=" + waiters.size() + "}";
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.ecommerce.concurrent;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Retries asynchronous calls without holding a thread between attempts: the
+ * next attempt is scheduled on a {@link ScheduledExecutorService} and the
+ * caller gets a {@link CompletableFuture} straight away.
+ *
+ * Delays use decorrelated jitter: each delay is random between
+ * {@code baseDelayMillis} and three times the previous delay, capped at
+ * {@code maxDelayMillis}, so callers that failed together do not retry together.
+ * A failure is retried only if the retryable predicate accepts it and the
+ * dependency's {@link RetryBudget} has a retry left.
+ */
+public class AsyncRetrier {
+    /**
+     * Retries everything except refusals (bulkhead full, circuit open, limit
+     * reached), passed deadlines, cancellations, interrupts and invalid
+     * arguments, which would fail the same way again.
+     */
+    public static final Predicate<Throwable> TRANSIENT_FAILURES = e ->
+            !(e instanceof RejectedExecutionException
+                    || e instanceof DeadlineExceededException
+                    || e instanceof CancellationException
+                    || e instanceof InterruptedException
+                    || e instanceof IllegalArgumentException);
+
+    private final String name;
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Predicate<Throwable> retryable;
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    /**
+     * @param maxAttempts attempts including the first one
+     * @param retryable decides from the failure's cause whether another attempt may succeed
+     * @param scheduler only schedules attempts; the attempts themselves must not block it
+     */
+    public AsyncRetrier(String name, int maxAttempts, long baseDelayMillis, long maxDelayMillis,
+                        Predicate<Throwable> retryable, ScheduledExecutorService scheduler) {
+        if (maxAttempts < 1 || baseDelayMillis < 1 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("Invalid retry settings for " + name);
+        }
+        this.name = name;
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.retryable = retryable;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Starts the first attempt and retries it as needed. The returned future
+     * fails with the last attempt's failure; cancelling it cancels the running
+     * attempt and any scheduled retry.
+     * @param attempt starts one attempt, e.g. by submitting the call to a bulkhead
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> attempt, RetryBudget budget) {
+        return execute(attempt, budget, null);
+    }
+
+    /**
+     * Like {@link #execute(Supplier, RetryBudget)}, but no retry is scheduled
+     * that would start after the deadline.
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> attempt, RetryBudget budget,
+                                            Deadline deadline) {
+        budget.onRequest();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(attempt, budget, deadline, result, 1, baseDelayMillis);
+        return result;
+    }
+
+    private <T> void attempt(Supplier<CompletableFuture<T>> attempt, RetryBudget budget, Deadline deadline,
+                             CompletableFuture<T> result, int attemptNumber, long previousDelayMillis) {
+        if (result.isDone()) {
+            return;
+        }
+        CompletableFuture<T> current;
+        try {
+            current = attempt.get();
+        } catch (RuntimeException e) {
+            current = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> running = current;
+        result.whenComplete((value, error) -> running.cancel(true));
+
+        running.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = unwrap(error);
+            if (!retryable.test(cause)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            long delay = nextDelayMillis(previousDelayMillis);
+            if (deadline != null && deadline.remainingMillis() <= delay) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            if (attemptNumber >= maxAttempts || !budget.tryRetry()) {
+                exhausted.increment();
+                result.completeExceptionally(cause);
+                return;
+            }
+            retries.increment();
+            try {
+                ScheduledFuture<?> next = scheduler.schedule(
+                        () -> attempt(attempt, budget, deadline, result, attemptNumber + 1, delay),
+                        delay, TimeUnit.MILLISECONDS);
+                result.whenComplete((v, e) -> next.cancel(false));
+            } catch (RejectedExecutionException e) {
+                // Scheduler shut down
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    // Decorrelated jitter: uniform in [base, 3 * previous], capped
+    private long nextDelayMillis(long previousDelayMillis) {
+        long upper = Math.min(maxDelayMillis, previousDelayMillis * 3);
+        return ThreadLocalRandom.current().nextLong(baseDelayMillis, Math.max(baseDelayMillis, upper) + 1);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /** Retries scheduled so far */
+    public long getRetryCount() { return retries.sum(); }
+    /** Calls that failed with a retryable error after running out of attempts or budget */
+    public long getExhaustedCount() { return exhausted.sum(); }
+
+    @Override
+    public String toString() {
+        return "AsyncRetrier{" + name + ", retries=" + getRetryCount() + ", exhausted=" + getExhaustedCount() + "}";
+    }
+}
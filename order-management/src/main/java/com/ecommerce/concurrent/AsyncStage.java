@@ -0,0 +1,70 @@
+package com.ecommerce.concurrent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * One step of an asynchronous pipeline: asynchronous work behind an
+ * {@link AsyncLimiter}. Inputs beyond the limit wait in the limiter without
+ * holding a thread; the permit is returned when the work's future completes,
+ * whether it succeeds or fails.
+ */
+public class AsyncStage<I, O> {
+    private final String name;
+    private final AsyncLimiter limiter;
+    private final Function<I, CompletableFuture<O>> work;
+
+    public AsyncStage(String name, int limit, Function<I, CompletableFuture<O>> work) {
+        this.name = name;
+        this.limiter = new AsyncLimiter(limit);
+        this.work = work;
+    }
+
+    /**
+     * A stage whose work is a blocking call, run on the given executor.
+     */
+    public static <I, O> AsyncStage<I, O> blocking(String name, int limit, Executor executor, Function<I, O> call) {
+        return new AsyncStage<>(name, limit, input -> {
+            CompletableFuture<O> result = new CompletableFuture<>();
+            executor.execute(() -> {
+                try {
+                    result.complete(call.apply(input));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            return result;
+        });
+    }
+
+    /**
+     * Runs the stage for one input once a permit is free.
+     */
+    public CompletableFuture<O> apply(I input) {
+        return limiter.acquire().thenCompose(permit -> {
+            CompletableFuture<O> result;
+            try {
+                result = work.apply(input);
+            } catch (Throwable e) {
+                // e.g. the executor rejected the task
+                result = CompletableFuture.failedFuture(e);
+            }
+            result.whenComplete((value, error) -> limiter.release());
+            return result;
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public AsyncLimiter getLimiter() {
+        return limiter;
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncStage{" + name + ", " + limiter + "}";
+    }
+}
@@ -0,0 +1,172 @@
+package com.ecommerce.concurrent;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed-size lock-free queue on a preallocated ring of slots, safe for many
+ * producers and many consumers.
+ *
+ * Each slot carries a sequence number that says whose turn it is: a producer
+ * may fill slot {@code i} for position {@code p} once the slot's sequence is
+ * {@code p}, and a consumer may empty it once the sequence is {@code p + 1}.
+ * Producers and consumers claim positions with a CAS and never lock. Nothing
+ * is allocated per element, so memory stays flat however bursty the traffic.
+ *
+ * Blocking operations spin briefly, then park with a growing backoff.
+ */
+public class BoundedRingBuffer<E> {
+    private static final int SPIN_TRIES = 100;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity rounded up to the next power of two, and to at least 2: with a
+     *        single slot, a full slot's sequence would look free to the next producer
+     */
+    public BoundedRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        int size = Math.max(2, Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1);
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element if there is room right now.
+     * @return false if the buffer is full
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, element);
+                    // Publishes the element to consumers
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The slot still holds an element from one lap ago
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Adds an element, waiting up to the timeout for room.
+     * @return false if the buffer stayed full for the whole timeout
+     */
+    public boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int attempt = 0;
+        while (!offer(element)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            backoff(attempt++, remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Adds an element, waiting as long as it takes for room.
+     */
+    public void put(E element) throws InterruptedException {
+        int attempt = 0;
+        while (!offer(element)) {
+            backoff(attempt++, MAX_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Removes the oldest element.
+     * @return null if the buffer is empty
+     */
+    public E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = slots.get(index);
+                    slots.set(index, null);
+                    // Hands the slot back to producers for the next lap
+                    sequences.set(index, position + mask + 1);
+                    return element;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Removes up to {@code maxElements} elements into the collection.
+     * @return how many were moved
+     */
+    public int drainTo(Collection<? super E> target, int maxElements) {
+        int moved = 0;
+        E element;
+        while (moved < maxElements && (element = poll()) != null) {
+            target.add(element);
+            moved++;
+        }
+        return moved;
+    }
+
+    /**
+     * Approximate number of elements, exact when no one is adding or removing.
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    static void backoff(int attempt, long maxParkNanos) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (attempt < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else {
+            int shift = Math.min(attempt - SPIN_TRIES, 10);
+            LockSupport.parkNanos(Math.min(maxParkNanos, Math.min(MAX_PARK_NANOS, 1_000L << shift)));
+        }
+    }
+}
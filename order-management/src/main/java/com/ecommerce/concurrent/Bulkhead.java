@@ -0,0 +1,146 @@
+package com.ecommerce.concurrent;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Isolated capacity for calls to one dependency: at most {@code maxConcurrent}
+ * tasks run at once and at most {@code queueCapacity} more wait. Anything beyond
+ * that is rejected immediately with {@link RejectedExecutionException}, so a slow
+ * dependency fills its own bulkhead instead of every thread in the process.
+ *
+ * Tasks run on an executor from the given {@link ExecutionStrategy}; the limits
+ * hold the same way for pooled and thread-per-task strategies.
+ */
+public class Bulkhead implements Executor {
+    private final String name;
+    private final int maxConcurrent;
+    private final int queueCapacity;
+    private final ExecutorService executor;
+    private final Semaphore admitted;
+    private final Semaphore running;
+    private final LongAdder rejected = new LongAdder();
+
+    public Bulkhead(String name, int maxConcurrent, int queueCapacity, ExecutionStrategy strategy) {
+        if (maxConcurrent < 1 || queueCapacity < 0) {
+            throw new IllegalArgumentException("Bulkhead " + name + " needs maxConcurrent >= 1 and queueCapacity >= 0");
+        }
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.queueCapacity = queueCapacity;
+        this.executor = strategy.newExecutor(name, maxConcurrent);
+        this.admitted = new Semaphore(maxConcurrent + queueCapacity);
+        this.running = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Runs a task in this bulkhead. Cancelling the returned future with
+     * {@code mayInterruptIfRunning} interrupts the task.
+     * @throws RejectedExecutionException if the bulkhead is full or shut down
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> handle = admit(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                handle.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Fire-and-forget variant of {@link #submit}.
+     * @throws RejectedExecutionException if the bulkhead is full or shut down
+     */
+    @Override
+    public void execute(Runnable task) {
+        admit(task);
+    }
+
+    private Future<?> admit(Runnable task) {
+        if (!admitted.tryAcquire()) {
+            rejected.increment();
+            throw new RejectedExecutionException("Bulkhead " + name + " is full ("
+                    + maxConcurrent + " running, " + queueCapacity + " queued)");
+        }
+        AtomicBoolean started = new AtomicBoolean();
+        FutureTask<Void> future = new FutureTask<>(() -> {
+            if (!started.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                running.acquireUninterruptibly();
+                try {
+                    task.run();
+                } finally {
+                    running.release();
+                }
+            } finally {
+                admitted.release();
+            }
+        }, null) {
+            @Override
+            protected void done() {
+                // Cancelled before it started: the task body will never release its slot
+                if (started.compareAndSet(false, true)) {
+                    admitted.release();
+                }
+            }
+        };
+        try {
+            executor.execute(future);
+            return future;
+        } catch (RejectedExecutionException e) {
+            future.cancel(false);
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    public String getName() { return name; }
+    public int getMaxConcurrent() { return maxConcurrent; }
+    public int getQueueCapacity() { return queueCapacity; }
+
+    /** Tasks currently running or waiting to run */
+    public int getInFlight() {
+        return maxConcurrent + queueCapacity - admitted.availablePermits();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Stops accepting tasks; running and queued tasks still complete.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Stops accepting tasks and interrupts everything in flight.
+     */
+    public void shutdownNow() {
+        executor.shutdownNow();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "Bulkhead{" + name + ", inFlight=" + getInFlight() + ", rejected=" + getRejectedCount() + "}";
+    }
+}
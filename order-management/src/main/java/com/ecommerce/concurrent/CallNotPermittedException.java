@@ -0,0 +1,21 @@
+package com.ecommerce.concurrent;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A call to a dependency was refused without being attempted, because its
+ * circuit breaker is open or its concurrency limit is reached. Retrying right
+ * away only adds load; callers should fail fast or fall back.
+ */
+public class CallNotPermittedException extends RejectedExecutionException {
+    private final String dependency;
+
+    public CallNotPermittedException(String dependency, String reason) {
+        super("Call to " + dependency + " not permitted: " + reason);
+        this.dependency = dependency;
+    }
+
+    public String getDependency() {
+        return dependency;
+    }
+}
@@ -0,0 +1,196 @@
+package com.ecommerce.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Count-based circuit breaker.
+ *
+ * CLOSED: calls go through and the outcomes of the last {@code windowSize}
+ * calls are kept. Once at least {@code minimumCalls} are recorded and the
+ * failure rate or the slow-call rate reaches its threshold, the breaker opens.
+ *
+ * OPEN: calls are refused for {@code openMillis}, then the breaker goes
+ * half-open.
+ *
+ * HALF_OPEN: only {@code probeCalls} trial calls are let through. If they all
+ * succeed quickly the breaker closes with an empty window; any failed or slow
+ * probe opens it again.
+ *
+ * A call counts as failed when it throws, and as slow when it takes longer
+ * than {@code slowCallMillis}.
+ */
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int probeCalls;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock. Outcome ring: bit 0 = failed, bit 1 = slow
+    private final byte[] outcomes;
+    private int recorded;
+    private int next;
+    private int failures;
+    private int slowCalls;
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    /**
+     * @param failureRateThreshold fraction (0-1] of failed calls that opens the breaker
+     * @param slowCallRateThreshold fraction (0-1] of slow calls that opens the breaker
+     */
+    public CircuitBreaker(String name, int windowSize, int minimumCalls,
+                          double failureRateThreshold, double slowCallRateThreshold,
+                          long slowCallMillis, long openMillis, int probeCalls) {
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize || probeCalls < 1) {
+            throw new IllegalArgumentException("Invalid circuit breaker settings for " + name);
+        }
+        this.name = name;
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.probeCalls = probeCalls;
+        this.outcomes = new byte[windowSize];
+    }
+
+    /**
+     * Asks to make a call; every permitted call must be followed by
+     * {@link #onSuccess}, {@link #onError} or {@link #onIgnored}.
+     * @return false if the breaker refuses the call
+     */
+    public boolean tryAcquirePermission() {
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAtNanos < openNanos) {
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesStarted >= probeCalls) {
+                    return false;
+                }
+                probesStarted++;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess(long durationNanos) {
+        record(false, durationNanos >= slowCallNanos);
+    }
+
+    public void onError(long durationNanos) {
+        record(true, durationNanos >= slowCallNanos);
+    }
+
+    /**
+     * Ends a permitted call without recording an outcome, for calls whose
+     * result says nothing about the dependency. A half-open probe slot is freed.
+     */
+    public void onIgnored() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN && probesStarted > 0) {
+                probesStarted--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public State getState() {
+        lock.lock();
+        try {
+            // Report an expired OPEN as HALF_OPEN without waiting for the next call
+            if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openNanos) {
+                return State.HALF_OPEN;
+            }
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void record(boolean failed, boolean slow) {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                if (failed || slow) {
+                    transition(State.OPEN);
+                } else if (++probesSucceeded >= probeCalls) {
+                    transition(State.CLOSED);
+                }
+                return;
+            }
+            if (state == State.OPEN) {
+                // A call admitted before the breaker opened; it no longer matters
+                return;
+            }
+            if (recorded == windowSize) {
+                byte evicted = outcomes[next];
+                failures -= evicted & 1;
+                slowCalls -= (evicted >> 1) & 1;
+            } else {
+                recorded++;
+            }
+            outcomes[next] = (byte) ((failed ? 1 : 0) | (slow ? 2 : 0));
+            next = (next + 1) % windowSize;
+            failures += failed ? 1 : 0;
+            slowCalls += slow ? 1 : 0;
+
+            if (recorded >= minimumCalls
+                    && ((double) failures / recorded >= failureRateThreshold
+                        || (double) slowCalls / recorded >= slowCallRateThreshold)) {
+                transition(State.OPEN);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held
+    private void transition(State target) {
+        state = target;
+        probesStarted = 0;
+        probesSucceeded = 0;
+        if (target == State.OPEN) {
+            openedAtNanos = System.nanoTime();
+        } else if (target == State.CLOSED) {
+            recorded = 0;
+            next = 0;
+            failures = 0;
+            slowCalls = 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return "CircuitBreaker{" + name + ", " + state + ", calls=" + recorded
+                    + ", failures=" + failures + ", slow=" + slowCalls + "}";
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.ecommerce.concurrent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Read-through cache with a time-to-live, a size bound and single-flight loading.
+ *
+ * Entries expire {@code ttlMillis} after they were loaded; when the cache is full
+ * the least recently used entry is evicted. Concurrent misses on the same key
+ * share one loader call: the first caller loads, the rest wait for its result.
+ * Failed loads are not cached; every caller waiting on that load gets the failure.
+ *
+ * An {@link #async} cache takes a loader that returns a future and is read with
+ * {@link #getAsync}, so no thread waits while a value loads.
+ */
+public class CoalescingCache<K, V> {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Function<K, CompletableFuture<V>> loader;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<K, Entry<V>> entries;
+    private final Map<K, CompletableFuture<V>> inflight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public CoalescingCache(int maxSize, long ttlMillis, Function<K, V> loader) {
+        this(key -> CompletableFuture.completedFuture(loader.apply(key)), maxSize, ttlMillis);
+    }
+
+    private CoalescingCache(Function<K, CompletableFuture<V>> loader, int maxSize, long ttlMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.loader = loader;
+        // Access-ordered, so the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > CoalescingCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * A cache whose loader starts the load and returns its future. The loader
+     * runs on the calling thread, so it must not block.
+     */
+    public static <K, V> CoalescingCache<K, V> async(int maxSize, long ttlMillis,
+                                                     Function<K, CompletableFuture<V>> loader) {
+        return new CoalescingCache<>(loader, maxSize, ttlMillis);
+    }
+
+    /**
+     * Returns the cached value, loading it if absent or expired.
+     * @throws RuntimeException whatever the loader threw
+     */
+    public V get(K key) {
+        return join(getAsync(key));
+    }
+
+    /**
+     * Returns the cached value, or a future of the load if it is absent or expired.
+     * A failed load fails the future with the loader's exception.
+     */
+    public CompletableFuture<V> getAsync(K key) {
+        Entry<V> entry = lookup(key);
+        if (entry != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(entry.value);
+        }
+        misses.increment();
+
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inflight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+        // Another flight may have finished between our lookup and claiming the key
+        entry = lookup(key);
+        if (entry != null) {
+            inflight.remove(key, mine);
+            mine.complete(entry.value);
+            return mine;
+        }
+        load(key).whenComplete((value, error) -> {
+            inflight.remove(key, mine);
+            if (error != null) {
+                mine.completeExceptionally(unwrap(error));
+            } else {
+                mine.complete(value);
+            }
+        });
+        return mine;
+    }
+
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), loads.sum(), coalesced.sum(),
+                evictions.sum(), expirations.sum());
+    }
+
+    private CompletableFuture<V> load(K key) {
+        loads.increment();
+        CompletableFuture<V> loading;
+        try {
+            loading = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return loading.thenApply(value -> {
+            Entry<V> entry = new Entry<>(value, System.nanoTime() + ttlNanos);
+            lock.lock();
+            try {
+                entries.put(key, entry);
+            } finally {
+                lock.unlock();
+            }
+            return value;
+        });
+    }
+
+    private Entry<V> lookup(K key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.expiresAtNanos >= 0) {
+                entries.remove(key);
+                expirations.increment();
+                return null;
+            }
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAtNanos;
+
+        Entry(V value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    /**
+     * Point-in-time counters. {@code coalesced} counts misses that waited on
+     * another caller's load instead of calling the loader themselves.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long loads;
+        private final long coalesced;
+        private final long evictions;
+        private final long expirations;
+
+        Stats(long hits, long misses, long loads, long coalesced, long evictions, long expirations) {
+            this.hits = hits;
+            this.misses = misses;
+            this.loads = loads;
+            this.coalesced = coalesced;
+            this.evictions = evictions;
+            this.expirations = expirations;
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getLoads() { return loads; }
+        public long getCoalesced() { return coalesced; }
+        public long getEvictions() { return evictions; }
+        public long getExpirations() { return expirations; }
+
+        public double getHitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0.0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{hits=" + hits + ", misses=" + misses + ", loads=" + loads
+                    + ", coalesced=" + coalesced + ", evictions=" + evictions
+                    + ", expirations=" + expirations + ", hitRate=" + String.format("%.2f", getHitRate()) + "}";
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.ecommerce.concurrent;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A point in time by which a whole operation must finish, passed down to every
+ * step and external call it makes.
+ *
+ * Steps check it before starting ({@link #check}) and skip when the time left
+ * is less than they need. Blocking calls made through {@link #call} are
+ * interrupted when the deadline passes, and futures waited on with
+ * {@link #await} are cancelled. Either way the step fails with
+ * {@link DeadlineExceededException}, so its caller can compensate.
+ */
+public final class Deadline {
+    private static final int RUNNING = 0;
+    private static final int DONE = 1;
+    private static final int INTERRUPTING = 2;
+    private static final int INTERRUPTED = 3;
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    public long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    public long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(remainingNanos());
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    /**
+     * @throws DeadlineExceededException if less than {@code requiredMillis} is left
+     */
+    public void check(String operation, long requiredMillis) {
+        long remaining = remainingMillis();
+        if (remaining < requiredMillis) {
+            throw new DeadlineExceededException(operation + " skipped: " + Math.max(0, remaining)
+                    + "ms left, needs " + requiredMillis + "ms");
+        }
+    }
+
+    /**
+     * Makes a blocking call on the current thread, interrupting it if the deadline passes.
+     * @param expectedMillis usual duration of the call; it is skipped if less time is left
+     * @throws DeadlineExceededException if the call was skipped or interrupted by the deadline
+     */
+    public <T> T call(String operation, long expectedMillis, Callable<T> call) {
+        check(operation, expectedMillis);
+        Thread caller = Thread.currentThread();
+        AtomicInteger state = new AtomicInteger(RUNNING);
+        ScheduledFuture<?> timer = TimerHolder.TIMER.schedule(() -> {
+            if (state.compareAndSet(RUNNING, INTERRUPTING)) {
+                caller.interrupt();
+                state.set(INTERRUPTED);
+            }
+        }, remainingNanos(), TimeUnit.NANOSECONDS);
+
+        T result;
+        try {
+            result = call.call();
+        } catch (RuntimeException e) {
+            if (finish(state, timer)) {
+                throw e;
+            }
+            throw exceeded(operation);
+        } catch (Exception e) {
+            if (finish(state, timer)) {
+                throw new CompletionException(e);
+            }
+            throw exceeded(operation);
+        }
+        if (!finish(state, timer)) {
+            // The call swallowed the interrupt and returned a made-up result
+            throw exceeded(operation);
+        }
+        return result;
+    }
+
+    /**
+     * Waits for a future until the deadline, cancelling it if the deadline passes.
+     * @throws DeadlineExceededException if the deadline passed first
+     * @throws CompletionException wrapping the future's failure
+     */
+    public <T> T await(String operation, Future<T> future) throws InterruptedException {
+        try {
+            return future.get(Math.max(0, remainingNanos()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw exceeded(operation);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    /**
+     * Stops the timer. Returns false if it already interrupted the caller, in
+     * which case the interrupt is cleared.
+     */
+    private static boolean finish(AtomicInteger state, ScheduledFuture<?> timer) {
+        if (state.compareAndSet(RUNNING, DONE)) {
+            timer.cancel(false);
+            return true;
+        }
+        while (state.get() == INTERRUPTING) {
+            Thread.onSpinWait();
+        }
+        Thread.interrupted();
+        return false;
+    }
+
+    private DeadlineExceededException exceeded(String operation) {
+        return new DeadlineExceededException(operation + " aborted: deadline passed "
+                + -remainingMillis() + "ms ago");
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline{" + remainingMillis() + "ms left}";
+    }
+
+    private static final class TimerHolder {
+        static final ScheduledThreadPoolExecutor TIMER =
+                new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("deadline-timer"));
+
+        static {
+            // Most timers are cancelled; drop them right away instead of when they were due
+            TIMER.setRemoveOnCancelPolicy(true);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.ecommerce.concurrent;
+
+/**
+ * Thrown when a step is skipped or aborted because its {@link Deadline} has
+ * too little time left or has passed.
+ */
+public class DeadlineExceededException extends RuntimeException {
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,87 @@
+package com.ecommerce.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Circuit breaker plus adaptive concurrency limit around calls to one external
+ * dependency. A call is refused with {@link CallNotPermittedException} when the
+ * breaker is open or the limit is reached; otherwise its latency and outcome
+ * feed both. A call stopped by the caller's own deadline
+ * ({@link DeadlineExceededException}) feeds neither, since it says nothing about
+ * the dependency. Retries of calls to the dependency draw on its {@link RetryBudget}.
+ */
+public class DependencyGuard {
+    private final String name;
+    private final CircuitBreaker circuitBreaker;
+    private final AdaptiveLimiter limiter;
+    private final RetryBudget retryBudget;
+
+    public DependencyGuard(String name, CircuitBreaker circuitBreaker, AdaptiveLimiter limiter,
+                           RetryBudget retryBudget) {
+        this.name = name;
+        this.circuitBreaker = circuitBreaker;
+        this.limiter = limiter;
+        this.retryBudget = retryBudget;
+    }
+
+    /**
+     * Makes a guarded call. Checked exceptions from the call are wrapped in
+     * {@link CompletionException}.
+     * @throws CallNotPermittedException if the call was refused without being made
+     */
+    public <T> T call(Callable<T> call) {
+        if (!limiter.tryAcquire()) {
+            throw new CallNotPermittedException(name, "concurrency limit " + limiter.getLimit() + " reached");
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            limiter.abort();
+            throw new CallNotPermittedException(name, "circuit breaker is " + circuitBreaker.getState());
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        boolean ignored = false;
+        try {
+            T result = call.call();
+            failed = false;
+            return result;
+        } catch (DeadlineExceededException e) {
+            ignored = true;
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            long duration = System.nanoTime() - start;
+            if (ignored) {
+                circuitBreaker.onIgnored();
+                limiter.abort();
+            } else {
+                if (failed) {
+                    circuitBreaker.onError(duration);
+                } else {
+                    circuitBreaker.onSuccess(duration);
+                }
+                limiter.release(duration, failed);
+            }
+        }
+    }
+
+    public void run(Runnable call) {
+        call(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public String getName() { return name; }
+    public CircuitBreaker getCircuitBreaker() { return circuitBreaker; }
+    public AdaptiveLimiter getLimiter() { return limiter; }
+    public RetryBudget getRetryBudget() { return retryBudget; }
+
+    @Override
+    public String toString() {
+        return "DependencyGuard{" + name + ", " + circuitBreaker.getState() + ", " + limiter + ", " + retryBudget + "}";
+    }
+}
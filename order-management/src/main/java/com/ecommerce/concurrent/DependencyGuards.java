@@ -0,0 +1,74 @@
+package com.ecommerce.concurrent;
+
+import com.ecommerce.concurrent.ExecutorRuntime.Dependency;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One {@link DependencyGuard} per external dependency (everything except
+ * ORCHESTRATION, which is internal).
+ *
+ * Defaults: a 50-call window that opens at 50% failures or 50% slow calls
+ * (after at least 10 calls), stays open for 5s and closes after 3 good probes.
+ * A call is slow at about three times the dependency's normal latency, which
+ * is also the latency target of its AIMD limiter. Retries may add at most 10%
+ * to a dependency's traffic, with a burst of 10.
+ */
+public class DependencyGuards {
+    private static final int WINDOW_SIZE = 50;
+    private static final int MINIMUM_CALLS = 10;
+    private static final double FAILURE_RATE_THRESHOLD = 0.5;
+    private static final double SLOW_CALL_RATE_THRESHOLD = 0.5;
+    private static final long OPEN_MILLIS = 5_000;
+    private static final int PROBE_CALLS = 3;
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double RETRY_RATIO = 0.1;
+    private static final int RETRY_BURST = 10;
+
+    private final Map<Dependency, DependencyGuard> guards = new EnumMap<>(Dependency.class);
+
+    public DependencyGuards() {
+        add(Dependency.INVENTORY, 1_000, 20, 100);
+        add(Dependency.PAYMENT, 1_500, 20, 100);
+        add(Dependency.SHIPPING, 1_200, 20, 100);
+        add(Dependency.NOTIFICATION, 1_000, 10, 50);
+    }
+
+    /**
+     * Process-wide guards, so every processor sees the same breaker state.
+     */
+    public static DependencyGuards shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * @throws IllegalArgumentException for a dependency without a guard
+     */
+    public DependencyGuard guard(Dependency dependency) {
+        DependencyGuard guard = guards.get(dependency);
+        if (guard == null) {
+            throw new IllegalArgumentException("No guard for " + dependency);
+        }
+        return guard;
+    }
+
+    public Map<Dependency, DependencyGuard> guards() {
+        return Collections.unmodifiableMap(guards);
+    }
+
+    private void add(Dependency dependency, long slowCallMillis, int initialLimit, int maxLimit) {
+        String name = dependency.name().toLowerCase(Locale.ROOT);
+        guards.put(dependency, new DependencyGuard(name,
+                new CircuitBreaker(name, WINDOW_SIZE, MINIMUM_CALLS, FAILURE_RATE_THRESHOLD,
+                        SLOW_CALL_RATE_THRESHOLD, slowCallMillis, OPEN_MILLIS, PROBE_CALLS),
+                new AdaptiveLimiter(initialLimit, 1, maxLimit, slowCallMillis, BACKOFF_RATIO),
+                new RetryBudget(RETRY_RATIO, RETRY_BURST)));
+    }
+
+    private static final class SharedHolder {
+        static final DependencyGuards INSTANCE = new DependencyGuards();
+    }
+}
@@ -0,0 +1,73 @@
+package com.ecommerce.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Built-in execution strategies:
+ * - FIXED: a bounded pool of platform threads, so at most poolSize tasks are in flight
+ * - VIRTUAL: one virtual thread per task, so tens of thousands of blocking calls
+ *   can be in flight at once
+ *
+ * Virtual threads need Java 21+. On older runtimes VIRTUAL falls back to FIXED,
+ * see {@link #isVirtualThreadsSupported()}.
+ */
+public enum ExecutionMode implements ExecutionStrategy {
+    FIXED {
+        @Override
+        public ExecutorService newExecutor(String name, int poolSize) {
+            return Executors.newFixedThreadPool(poolSize, new NamedThreadFactory(name));
+        }
+    },
+    VIRTUAL {
+        @Override
+        public ExecutorService newExecutor(String name, int poolSize) {
+            if (VIRTUAL_FACTORY == null) {
+                return FIXED.newExecutor(name, poolSize);
+            }
+            try {
+                return (ExecutorService) VIRTUAL_FACTORY.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create virtual thread executor", e);
+            }
+        }
+
+        @Override
+        public boolean isThreadPerTask() {
+            return VIRTUAL_FACTORY != null;
+        }
+    };
+
+    // Looked up reflectively so the code still compiles and runs on Java 17
+    private static final Method VIRTUAL_FACTORY = findVirtualFactory();
+
+    public static boolean isVirtualThreadsSupported() {
+        return VIRTUAL_FACTORY != null;
+    }
+
+    /**
+     * Parses a mode name case-insensitively; null or blank means FIXED.
+     * @throws IllegalArgumentException for an unknown name
+     */
+    public static ExecutionMode parse(String value) {
+        if (value == null || value.isBlank()) {
+            return FIXED;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + MODE_PROPERTY + " '" + value
+                    + "', expected fixed or virtual", e);
+        }
+    }
+
+    private static Method findVirtualFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
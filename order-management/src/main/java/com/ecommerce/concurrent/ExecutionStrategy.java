@@ -0,0 +1,36 @@
+package com.ecommerce.concurrent;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Decides what kind of threads run blocking work (external calls, emails).
+ *
+ * The built-in strategies are the {@link ExecutionMode} constants; which one is
+ * used by default comes from the {@value #MODE_PROPERTY} system property.
+ */
+public interface ExecutionStrategy {
+    String MODE_PROPERTY = "order.execution.mode";
+
+    /**
+     * Creates an executor for blocking tasks; the caller owns and shuts it down.
+     * @param name thread name prefix
+     * @param poolSize thread count for pooled strategies; thread-per-task strategies ignore it
+     */
+    ExecutorService newExecutor(String name, int poolSize);
+
+    /**
+     * Whether executors start a new (cheap) thread per task instead of pooling
+     * poolSize threads, so concurrency limits need not stand in for thread counts.
+     */
+    default boolean isThreadPerTask() {
+        return false;
+    }
+
+    /**
+     * The strategy named by the {@value #MODE_PROPERTY} system property
+     * ({@code fixed} or {@code virtual}), {@link ExecutionMode#FIXED} if unset.
+     */
+    static ExecutionStrategy fromConfig() {
+        return ExecutionMode.parse(System.getProperty(MODE_PROPERTY));
+    }
+}
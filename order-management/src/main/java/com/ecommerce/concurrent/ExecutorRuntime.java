@@ -0,0 +1,150 @@
+package com.ecommerce.concurrent;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived executors for order processing, one {@link Bulkhead} per external
+ * dependency. Threads are created once and reused across orders, and a slow
+ * dependency can only exhaust its own bulkhead. A single scheduler thread runs
+ * timers such as delayed retries, and a separate executor without a queue
+ * limit runs compensations, which must not be refused when the bulkheads are full.
+ *
+ * Processors normally share {@link #shared()}; tests and tools can create their
+ * own runtime and must {@link #close()} it.
+ */
+public class ExecutorRuntime implements AutoCloseable {
+    public enum Dependency {
+        INVENTORY(20, 200, 100),
+        PAYMENT(20, 200, 100),
+        SHIPPING(20, 200, 100),
+        NOTIFICATION(10, 1_000, 50),
+        /** Threads that drive a whole order through its steps */
+        ORCHESTRATION(50, 10_000, 10_000);
+
+        private final int maxConcurrent;
+        private final int queueCapacity;
+        private final int threadPerTaskMaxConcurrent;
+
+        Dependency(int maxConcurrent, int queueCapacity, int threadPerTaskMaxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+            this.queueCapacity = queueCapacity;
+            this.threadPerTaskMaxConcurrent = threadPerTaskMaxConcurrent;
+        }
+
+        public int getMaxConcurrent() { return maxConcurrent; }
+        public int getQueueCapacity() { return queueCapacity; }
+
+        /**
+         * Concurrency limit under the given strategy. With a thread per task,
+         * threads are cheap and the limit only protects the dependency, so it
+         * matches the upper bound of the dependency's adaptive limiter
+         * ({@link DependencyGuards}); orchestration is limited only by its queue.
+         */
+        public int getMaxConcurrent(ExecutionStrategy strategy) {
+            return strategy.isThreadPerTask() ? threadPerTaskMaxConcurrent : maxConcurrent;
+        }
+    }
+
+    private static final long SHUTDOWN_GRACE_SECONDS = 5;
+    private static final int COMPENSATION_THREADS = 10;
+
+    private final Map<Dependency, Bulkhead> bulkheads = new EnumMap<>(Dependency.class);
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("runtime-scheduler"));
+    private final ExecutorService compensations;
+
+    /**
+     * Creates a runtime with the default limits of each {@link Dependency} under the strategy.
+     */
+    public ExecutorRuntime(ExecutionStrategy strategy) {
+        for (Dependency dependency : Dependency.values()) {
+            String name = dependency.name().toLowerCase(Locale.ROOT);
+            bulkheads.put(dependency, new Bulkhead(name, dependency.getMaxConcurrent(strategy),
+                    dependency.getQueueCapacity(), strategy));
+        }
+        this.compensations = strategy.newExecutor("compensation", COMPENSATION_THREADS);
+    }
+
+    /**
+     * The process-wide runtime, created on first use with {@link ExecutionStrategy#fromConfig()}.
+     * It is closed by a JVM shutdown hook.
+     */
+    public static ExecutorRuntime shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    public Bulkhead bulkhead(Dependency dependency) {
+        return bulkheads.get(dependency);
+    }
+
+    /**
+     * Runs a call in the dependency's bulkhead.
+     * @throws RejectedExecutionException if that bulkhead is full
+     */
+    public <T> CompletableFuture<T> submit(Dependency dependency, Callable<T> call) {
+        return bulkheads.get(dependency).submit(call);
+    }
+
+    /**
+     * Timer for delayed work. Scheduled tasks must only hand work to a bulkhead, never block.
+     */
+    public ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Runs compensations (refunds, releasing stock). Its queue is unbounded, so
+     * it only rejects work once the runtime is closed.
+     */
+    public ExecutorService compensations() {
+        return compensations;
+    }
+
+    public Map<Dependency, Bulkhead> bulkheads() {
+        return Collections.unmodifiableMap(bulkheads);
+    }
+
+    /**
+     * Lets in-flight work finish for a few seconds, then interrupts what is left.
+     */
+    @Override
+    public void close() {
+        // Timers already scheduled still fire; the bulkheads then reject their work
+        scheduler.shutdown();
+        bulkheads.values().forEach(Bulkhead::shutdown);
+        try {
+            for (Bulkhead bulkhead : bulkheads.values()) {
+                if (!bulkhead.awaitTermination(SHUTDOWN_GRACE_SECONDS, TimeUnit.SECONDS)) {
+                    bulkhead.shutdownNow();
+                }
+            }
+            // Compensations started by the work above are accepted until now
+            compensations.shutdown();
+            if (!compensations.awaitTermination(SHUTDOWN_GRACE_SECONDS, TimeUnit.SECONDS)) {
+                compensations.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            bulkheads.values().forEach(Bulkhead::shutdownNow);
+            compensations.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class SharedHolder {
+        static final ExecutorRuntime INSTANCE = new ExecutorRuntime(ExecutionStrategy.fromConfig());
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::close, "executor-runtime-shutdown"));
+        }
+    }
+}
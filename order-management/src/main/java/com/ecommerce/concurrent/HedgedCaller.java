@@ -0,0 +1,238 @@
+package com.ecommerce.concurrent;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hedged requests for idempotent calls. If a call has not returned after the
+ * recent {@code percentile} latency, a second identical call is started; the
+ * first result wins and the other call is cancelled (interrupted).
+ *
+ * Hedges are capped by a budget: every call earns {@code maxHedgeRatio} of a
+ * hedge, up to a small burst, and a hedge spends one. Until enough latency
+ * samples exist, the hedge delay is {@code minDelayMillis}, which is also the
+ * lowest delay ever used.
+ *
+ * A call fails only when an attempt fails and no other attempt is running.
+ * Attempts run on the given executor, normally the dependency's
+ * {@link Bulkhead}, so hedges count against its limit; a hedge the executor
+ * rejects is not sent. Hedge timers share one daemon thread across all callers.
+ */
+public class HedgedCaller implements AutoCloseable {
+    private static final int WINDOW_SIZE = 1024;
+    private static final int MIN_SAMPLES = 20;
+    private static final long CREDIT_SCALE = 1_000;
+    private static final long MAX_CREDIT = 10 * CREDIT_SCALE;
+
+    private final String name;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long creditPerCall;
+    private final LatencyTracker latency = new LatencyTracker(WINDOW_SIZE);
+    private final AtomicLong hedgeCredit = new AtomicLong(CREDIT_SCALE);
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder budgetDenied = new LongAdder();
+    private final LongAdder hedgesRejected = new LongAdder();
+
+    /**
+     * Runs attempts on a dedicated cached pool that is shut down on {@link #close()}.
+     */
+    public HedgedCaller(String name, double percentile, long minDelayMillis, double maxHedgeRatio) {
+        this(name, percentile, minDelayMillis, maxHedgeRatio, null);
+    }
+
+    /**
+     * @param percentile latency percentile (0-1) after which a hedge is sent, e.g. 0.95
+     * @param maxHedgeRatio at most this fraction of calls are hedged over time, e.g. 0.05
+     * @param executor runs every attempt; null for a dedicated pool owned by this caller
+     */
+    public HedgedCaller(String name, double percentile, long minDelayMillis, double maxHedgeRatio,
+                        Executor executor) {
+        if (percentile <= 0 || percentile >= 1 || maxHedgeRatio <= 0 || maxHedgeRatio > 1) {
+            throw new IllegalArgumentException("Invalid hedging settings for " + name);
+        }
+        this.name = name;
+        this.percentile = percentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.creditPerCall = Math.round(maxHedgeRatio * CREDIT_SCALE);
+        this.ownedExecutor = executor == null
+                ? Executors.newCachedThreadPool(new NamedThreadFactory(name + "-hedged"))
+                : null;
+        this.executor = executor == null ? ownedExecutor : executor;
+    }
+
+    /**
+     * Makes a hedged call and waits for the first result.
+     * @throws CompletionException wrapping the failure if the call failed
+     */
+    public <T> T call(Callable<T> call) {
+        CompletableFuture<T> result = callAsync(call);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    /**
+     * Makes a hedged call. Cancelling the returned future cancels every attempt.
+     */
+    public <T> CompletableFuture<T> callAsync(Callable<T> call) {
+        calls.increment();
+        earnCredit();
+        long start = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(1);
+        Future<?> primary;
+        try {
+            primary = launch(call, result, running, start, false);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        long delay = hedgeDelayNanos();
+        ScheduledFuture<?> hedge = TimerHolder.TIMER.schedule(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (!spendCredit()) {
+                budgetDenied.increment();
+                return;
+            }
+            running.incrementAndGet();
+            Future<?> second;
+            try {
+                second = launch(call, result, running, start, true);
+            } catch (RejectedExecutionException e) {
+                // No room for a second attempt; the first one is still running
+                running.decrementAndGet();
+                hedgesRejected.increment();
+                return;
+            }
+            hedges.increment();
+            result.whenComplete((value, error) -> second.cancel(true));
+        }, delay, TimeUnit.NANOSECONDS);
+
+        result.whenComplete((value, error) -> {
+            hedge.cancel(false);
+            primary.cancel(true);
+        });
+        return result;
+    }
+
+    /**
+     * Starts one attempt. Its outcome is applied once the attempt has finished,
+     * so cancelling the attempts after a win never interrupts the winner's own thread.
+     * @throws RejectedExecutionException if the executor has no room for it
+     */
+    private <T> Future<?> launch(Callable<T> call, CompletableFuture<T> result, AtomicInteger running,
+                                 long start, boolean isHedge) {
+        FutureTask<T> attempt = new FutureTask<>(call) {
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    // A loser cancelled after the result was settled
+                    return;
+                }
+                try {
+                    if (result.complete(get())) {
+                        latency.record(System.nanoTime() - start);
+                        if (isHedge) {
+                            hedgeWins.increment();
+                        }
+                    }
+                } catch (ExecutionException e) {
+                    // Fail only if no other attempt can still succeed
+                    if (running.decrementAndGet() == 0) {
+                        result.completeExceptionally(e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    // Not reachable: the attempt has already finished
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        executor.execute(attempt);
+        return attempt;
+    }
+
+    private long hedgeDelayNanos() {
+        if (latency.getCount() < MIN_SAMPLES) {
+            return minDelayNanos;
+        }
+        return Math.max(minDelayNanos, latency.percentileNanos(percentile));
+    }
+
+    private void earnCredit() {
+        hedgeCredit.getAndUpdate(credit -> Math.min(MAX_CREDIT, credit + creditPerCall));
+    }
+
+    private boolean spendCredit() {
+        while (true) {
+            long credit = hedgeCredit.get();
+            if (credit < CREDIT_SCALE) {
+                return false;
+            }
+            if (hedgeCredit.compareAndSet(credit, credit - CREDIT_SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    /** Current hedge delay in milliseconds */
+    public long getHedgeDelayMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(hedgeDelayNanos());
+    }
+
+    public long getCallCount() { return calls.sum(); }
+    public long getHedgeCount() { return hedges.sum(); }
+    /** Hedges that returned before the original call */
+    public long getHedgeWinCount() { return hedgeWins.sum(); }
+    /** Hedges that were due but not sent because the budget was spent */
+    public long getBudgetDeniedCount() { return budgetDenied.sum(); }
+    /** Hedges that were due but not sent because the executor was full */
+    public long getHedgesRejectedCount() { return hedgesRejected.sum(); }
+
+    /**
+     * Stops a dedicated pool, interrupting its attempts; a shared executor is left to its owner.
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HedgedCaller{" + name + ", calls=" + getCallCount() + ", hedges=" + getHedgeCount()
+                + ", hedgeWins=" + getHedgeWinCount() + ", budgetDenied=" + getBudgetDeniedCount()
+                + ", hedgesRejected=" + getHedgesRejectedCount()
+                + ", delay=" + getHedgeDelayMillis() + "ms}";
+    }
+
+    private static final class TimerHolder {
+        static final ScheduledThreadPoolExecutor TIMER =
+                new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("hedge-timer"));
+
+        static {
+            // Most timers are cancelled; drop them right away instead of when they were due
+            TIMER.setRemoveOnCancelPolicy(true);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.ecommerce.concurrent;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Online latency percentiles over the most recent {@code windowSize} samples.
+ *
+ * Recording is lock-free: samples go into a ring. Percentile queries sort a
+ * copy of the ring, so results are cached and recomputed only after another
+ * {@code windowSize / 16} samples have arrived.
+ */
+public class LatencyTracker {
+    private final AtomicLongArray samples;
+    private final AtomicLong count = new AtomicLong();
+    private final int refreshEvery;
+
+    // Cached sorted snapshot, replaced as a whole
+    private volatile Snapshot snapshot = new Snapshot(new long[0], 0);
+
+    public LatencyTracker(int windowSize) {
+        if (windowSize < 16) {
+            throw new IllegalArgumentException("windowSize must be at least 16");
+        }
+        this.samples = new AtomicLongArray(windowSize);
+        this.refreshEvery = windowSize / 16;
+    }
+
+    public void record(long nanos) {
+        long n = count.getAndIncrement();
+        samples.set((int) (n % samples.length()), nanos);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Latency at the given percentile (0-1] of recent samples, or -1 if there are none yet.
+     */
+    public long percentileNanos(double percentile) {
+        Snapshot current = snapshot;
+        long n = count.get();
+        if (n - current.count >= refreshEvery || (current.sorted.length == 0 && n > 0)) {
+            current = refresh(n);
+        }
+        long[] sorted = current.sorted;
+        if (sorted.length == 0) {
+            return -1;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private Snapshot refresh(long n) {
+        int size = (int) Math.min(n, samples.length());
+        long[] copy = new long[size];
+        for (int i = 0; i < size; i++) {
+            copy[i] = samples.get(i);
+        }
+        Arrays.sort(copy);
+        Snapshot fresh = new Snapshot(copy, n);
+        snapshot = fresh;
+        return fresh;
+    }
+
+    private static final class Snapshot {
+        final long[] sorted;
+        final long count;
+
+        Snapshot(long[] sorted, long count) {
+            this.sorted = sorted;
+            this.count = count;
+        }
+    }
+}
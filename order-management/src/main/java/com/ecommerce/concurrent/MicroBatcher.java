@@ -0,0 +1,199 @@
+package com.ecommerce.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Collects concurrent single-item requests and flushes them as one batch
+ * when either {@code maxBatchSize} requests are waiting or {@code maxDelayMillis}
+ * have passed since the first one arrived.
+ *
+ * The batch function gets the requests in arrival order and must return one
+ * result per request, in the same order. Each caller's future completes with
+ * its own result. If the whole batch call fails, every future in that batch
+ * fails with the same cause.
+ *
+ * An {@link #async} batcher takes a batch function that returns a future of
+ * the results, so no thread waits while a batch is in flight.
+ */
+public class MicroBatcher<T, R> implements AutoCloseable {
+    private final String name;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final Function<List<T>, CompletableFuture<List<R>>> batchFunction;
+    private final ExecutorService ownedExecutor;
+    private final ScheduledExecutorService timer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<Pending<T, R>> buffer = new ArrayList<>();
+    private ScheduledFuture<?> flushTask;
+    private boolean closed;
+
+    /**
+     * Runs batches on a dedicated cached pool that is shut down on {@link #close()}.
+     */
+    public MicroBatcher(String name, int maxBatchSize, long maxDelayMillis,
+                        Function<List<T>, List<R>> batchFunction) {
+        this(name, maxBatchSize, maxDelayMillis, batchFunction, null);
+    }
+
+    /**
+     * @param executor runs the batch function; null for a dedicated pool owned by this batcher
+     */
+    public MicroBatcher(String name, int maxBatchSize, long maxDelayMillis,
+                        Function<List<T>, List<R>> batchFunction, Executor executor) {
+        this(name, maxBatchSize, maxDelayMillis, executor == null
+                ? Executors.newCachedThreadPool(new NamedThreadFactory(name + "-batch"))
+                : null, executor, batchFunction);
+    }
+
+    private MicroBatcher(String name, int maxBatchSize, long maxDelayMillis, ExecutorService ownedExecutor,
+                         Executor executor, Function<List<T>, List<R>> batchFunction) {
+        this(name, maxBatchSize, maxDelayMillis, ownedExecutor, requests -> {
+            CompletableFuture<List<R>> results = new CompletableFuture<>();
+            (executor == null ? ownedExecutor : executor).execute(() -> {
+                try {
+                    results.complete(batchFunction.apply(requests));
+                } catch (RuntimeException e) {
+                    results.completeExceptionally(e);
+                }
+            });
+            return results;
+        });
+    }
+
+    private MicroBatcher(String name, int maxBatchSize, long maxDelayMillis, ExecutorService ownedExecutor,
+                         Function<List<T>, CompletableFuture<List<R>>> batchFunction) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        this.name = name;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.batchFunction = batchFunction;
+        this.ownedExecutor = ownedExecutor;
+        this.timer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(name + "-timer"));
+    }
+
+    /**
+     * A batcher whose batch function starts the batch call and returns a future
+     * of its results. The function runs on the thread that fills the batch or
+     * on the timer thread, so it must not block.
+     */
+    public static <T, R> MicroBatcher<T, R> async(String name, int maxBatchSize, long maxDelayMillis,
+                                                  Function<List<T>, CompletableFuture<List<R>>> batchFunction) {
+        return new MicroBatcher<>(name, maxBatchSize, maxDelayMillis, null, batchFunction);
+    }
+
+    public CompletableFuture<R> submit(T request) {
+        Pending<T, R> pending = new Pending<>(request);
+        List<Pending<T, R>> full = null;
+        lock.lock();
+        try {
+            if (closed) {
+                pending.future.completeExceptionally(new RejectedExecutionException(name + " batcher is closed"));
+                return pending.future;
+            }
+            buffer.add(pending);
+            if (buffer.size() >= maxBatchSize) {
+                full = drain();
+            } else if (buffer.size() == 1) {
+                flushTask = timer.schedule(this::flush, maxDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return pending.future;
+    }
+
+    /**
+     * Sends whatever is buffered right away.
+     */
+    public void flush() {
+        List<Pending<T, R>> batch;
+        lock.lock();
+        try {
+            batch = buffer.isEmpty() ? null : drain();
+        } finally {
+            lock.unlock();
+        }
+        if (batch != null) {
+            dispatch(batch);
+        }
+    }
+
+    // Called with the lock held
+    private List<Pending<T, R>> drain() {
+        List<Pending<T, R>> batch = buffer;
+        buffer = new ArrayList<>();
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(List<Pending<T, R>> batch) {
+        List<T> requests = new ArrayList<>(batch.size());
+        for (Pending<T, R> pending : batch) {
+            requests.add(pending.request);
+        }
+        CompletableFuture<List<R>> results;
+        try {
+            results = batchFunction.apply(requests);
+        } catch (RuntimeException e) {
+            // e.g. the executor rejected the batch
+            results = CompletableFuture.failedFuture(e);
+        }
+        results.whenComplete((values, error) -> complete(batch, values, error));
+    }
+
+    private void complete(List<Pending<T, R>> batch, List<R> results, Throwable error) {
+        if (error == null && (results == null || results.size() != batch.size())) {
+            error = new IllegalStateException(name + " batch returned "
+                    + (results == null ? "null" : results.size() + " results") + " for " + batch.size() + " requests");
+        }
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            batch.forEach(p -> p.future.completeExceptionally(cause));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future.complete(results.get(i));
+        }
+    }
+
+    /**
+     * Flushes anything still buffered and stops accepting requests.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        flush();
+        timer.shutdown();
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private static final class Pending<T, R> {
+        final T request;
+        final CompletableFuture<R> future = new CompletableFuture<>();
+
+        Pending(T request) {
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.ecommerce.concurrent;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates daemon threads named {@code <prefix>-<n>}, so background pools
+ * never keep the JVM alive and show up clearly in thread dumps.
+ *
+ * Work still running on these threads when the JVM exits is dropped, so pool
+ * owners drain on close: {@link ExecutorRuntime#close()} (run by a shutdown
+ * hook for the shared runtime) lets queued tasks finish, and processors wait
+ * for background sends such as confirmations in their own {@code close()}.
+ */
+public class NamedThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    public NamedThreadFactory(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable task) {
+        Thread thread = new Thread(task, prefix + "-" + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
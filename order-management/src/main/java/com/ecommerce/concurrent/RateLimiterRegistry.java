@@ -0,0 +1,47 @@
+package com.ecommerce.concurrent;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Named {@link TokenBucket}s, e.g. one per email provider and one per
+ * recipient domain. A call that is subject to several limits acquires each
+ * of them; names without a registered limit do not limit anything.
+ */
+public class RateLimiterRegistry {
+    private final Map<String, TokenBucket> limits = new ConcurrentHashMap<>();
+
+    /**
+     * Adds or replaces the limit with the given name.
+     */
+    public TokenBucket register(String name, double ratePerSecond, int burst) {
+        TokenBucket bucket = new TokenBucket(name, ratePerSecond, burst);
+        limits.put(name, bucket);
+        return bucket;
+    }
+
+    /**
+     * @return the limit, or null if none is registered under that name
+     */
+    public TokenBucket get(String name) {
+        return limits.get(name);
+    }
+
+    /**
+     * Waits for a permit from every registered limit among the names.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire(String... names) throws InterruptedException {
+        for (String name : names) {
+            TokenBucket bucket = limits.get(name);
+            if (bucket != null) {
+                bucket.acquire();
+            }
+        }
+    }
+
+    public Map<String, TokenBucket> limits() {
+        return Collections.unmodifiableMap(limits);
+    }
+}
@@ -0,0 +1,72 @@
+package com.ecommerce.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps retries to a fraction of the traffic to one dependency.
+ *
+ * Every first attempt deposits {@code retryRatio} of a retry, up to
+ * {@code maxBurst} retries, and every retry withdraws one. While a dependency
+ * fails everything, retries therefore add at most {@code retryRatio} extra
+ * load instead of multiplying it by the number of attempts.
+ */
+public class RetryBudget {
+    private static final long CREDIT_SCALE = 1_000;
+
+    private final long creditPerRequest;
+    private final long maxCredit;
+    private final AtomicLong credit;
+    private final LongAdder denied = new LongAdder();
+
+    /**
+     * @param retryRatio retries allowed per first attempt over time (0-1], e.g. 0.1
+     * @param maxBurst retries that can be saved up; the budget starts full
+     */
+    public RetryBudget(double retryRatio, int maxBurst) {
+        if (retryRatio <= 0 || retryRatio > 1 || maxBurst < 1) {
+            throw new IllegalArgumentException("Invalid retry budget settings");
+        }
+        this.creditPerRequest = Math.round(retryRatio * CREDIT_SCALE);
+        this.maxCredit = maxBurst * CREDIT_SCALE;
+        this.credit = new AtomicLong(maxCredit);
+    }
+
+    /**
+     * Records a first attempt, which earns part of a retry.
+     */
+    public void onRequest() {
+        credit.getAndUpdate(current -> Math.min(maxCredit, current + creditPerRequest));
+    }
+
+    /**
+     * @return true if a retry may be made; it has then been paid for
+     */
+    public boolean tryRetry() {
+        while (true) {
+            long current = credit.get();
+            if (current < CREDIT_SCALE) {
+                denied.increment();
+                return false;
+            }
+            if (credit.compareAndSet(current, current - CREDIT_SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    /** Retries currently available */
+    public long getAvailableRetries() {
+        return credit.get() / CREDIT_SCALE;
+    }
+
+    /** Retries refused because the budget was spent */
+    public long getDeniedCount() {
+        return denied.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "RetryBudget{available=" + getAvailableRetries() + ", denied=" + getDeniedCount() + "}";
+    }
+}
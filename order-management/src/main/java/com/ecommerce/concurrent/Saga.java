@@ -0,0 +1,319 @@
+package com.ecommerce.concurrent;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A set of steps, each with an action and an optional compensation, plus the
+ * steps it depends on.
+ *
+ * A step starts as soon as all of its dependencies have succeeded, so
+ * independent steps run concurrently. A step fails when its action throws.
+ * After the first failure no new step starts. Once the running steps settle,
+ * every completed step is compensated, as is every started step declared with
+ * {@link #uncertainStep}. A step's compensation starts only after
+ * the compensations of all completed steps that depend on it, and independent
+ * compensations run concurrently.
+ *
+ * Compensations run on their own executor, not on the steps' executors, so a
+ * full bulkhead cannot refuse an undo. A compensation that throws is retried
+ * with exponential backoff until it succeeds, or until
+ * {@link #compensationAttempts(int)} attempts if a bound is set.
+ *
+ * Dependencies must be declared before the steps that use them, so the steps
+ * always form a DAG. A saga instance is meant to be executed once.
+ */
+public class Saga {
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    private static final long COMPENSATION_BASE_DELAY_MILLIS = 100;
+    private static final long COMPENSATION_MAX_DELAY_MILLIS = 5_000;
+
+    private final String name;
+    private final Executor defaultExecutor;
+    private final Executor compensationExecutor;
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private int maxCompensationAttempts = Integer.MAX_VALUE;
+
+    /**
+     * @param defaultExecutor runs the actions of steps declared without an executor
+     * @param compensationExecutor runs every compensation; it should never reject work,
+     *        e.g. {@link ExecutorRuntime#compensations()}
+     */
+    public Saga(String name, Executor defaultExecutor, Executor compensationExecutor) {
+        this.name = name;
+        this.defaultExecutor = defaultExecutor;
+        this.compensationExecutor = compensationExecutor;
+    }
+
+    /**
+     * Gives up on a compensation after this many attempts; it is then reported
+     * in {@link Result#getCompensationFailures()}. Unbounded by default.
+     */
+    public Saga compensationAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Saga " + name + " needs at least one compensation attempt");
+        }
+        this.maxCompensationAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * Declares a step that runs on the saga's default executor.
+     * @param compensation undoes the action; null if there is nothing to undo
+     */
+    public Saga step(String stepName, Action action, Runnable compensation, String... dependsOn) {
+        return step(stepName, defaultExecutor, action, compensation, dependsOn);
+    }
+
+    /**
+     * Declares a step whose action runs on the given executor.
+     * @throws IllegalArgumentException on a duplicate name or an undeclared dependency
+     */
+    public Saga step(String stepName, Executor executor, Action action, Runnable compensation, String... dependsOn) {
+        return addStep(stepName, executor, action, compensation, false, dependsOn);
+    }
+
+    /**
+     * Declares a step whose action may have taken effect even though it failed,
+     * e.g. a charge cut off by a timeout after the request was sent. Once the
+     * action has started, its compensation runs whether the action succeeded
+     * or not, so the compensation must cope with an action that had no effect.
+     */
+    public Saga uncertainStep(String stepName, Action action, Runnable compensation, String... dependsOn) {
+        return addStep(stepName, defaultExecutor, action, compensation, true, dependsOn);
+    }
+
+    private Saga addStep(String stepName, Executor executor, Action action, Runnable compensation,
+                         boolean uncertain, String... dependsOn) {
+        if (steps.containsKey(stepName)) {
+            throw new IllegalArgumentException("Saga " + name + " already has a step " + stepName);
+        }
+        for (String dependency : dependsOn) {
+            if (!steps.containsKey(dependency)) {
+                throw new IllegalArgumentException("Step " + stepName + " depends on undeclared step " + dependency);
+            }
+        }
+        steps.put(stepName, new Step(stepName, executor, action, compensation, List.of(dependsOn), uncertain));
+        return this;
+    }
+
+    /**
+     * Runs the saga and blocks until it has succeeded or been compensated.
+     */
+    public Result execute() {
+        return executeAsync().join();
+    }
+
+    /**
+     * Runs the saga; the future completes after success, or after compensation on failure.
+     */
+    public CompletableFuture<Result> executeAsync() {
+        AtomicReference<Failure> failure = new AtomicReference<>();
+        Set<String> completed = ConcurrentHashMap.newKeySet();
+        Set<String> started = ConcurrentHashMap.newKeySet();
+        Map<String, CompletableFuture<Void>> runs = new HashMap<>();
+        List<CompletableFuture<Void>> settledRuns = new ArrayList<>();
+
+        // Declaration order is a topological order
+        for (Step step : steps.values()) {
+            CompletableFuture<Void> run = allOf(step.dependsOn, runs)
+                .thenRunAsync(() -> {
+                    if (failure.get() != null) {
+                        throw new CancellationException("Saga " + name + " already failed");
+                    }
+                    started.add(step.name);
+                    try {
+                        step.action.run();
+                        completed.add(step.name);
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, new Failure(step.name, e));
+                        throw new CompletionException(e);
+                    }
+                }, step.executor);
+            settledRuns.add(run.whenComplete((v, e) -> {
+                // Catches failures outside the action, e.g. the executor rejecting the step.
+                // A step skipped because a dependency failed is not the failure.
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause != null && !(cause instanceof CancellationException)
+                        && completed.containsAll(step.dependsOn)) {
+                    failure.compareAndSet(null, new Failure(step.name,
+                        cause instanceof Exception ex ? ex : new ExecutionException(cause)));
+                }
+            }));
+            runs.put(step.name, run);
+        }
+
+        return settled(settledRuns).thenCompose(v -> {
+            Failure first = failure.get();
+            if (first == null) {
+                return CompletableFuture.completedFuture(
+                    new Result(null, null, List.copyOf(completed), List.of(), Map.of()));
+            }
+            return compensate(completed, started, first);
+        });
+    }
+
+    private CompletableFuture<Result> compensate(Set<String> completed, Set<String> started, Failure first) {
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (Step step : steps.values()) {
+            for (String dependency : step.dependsOn) {
+                dependents.computeIfAbsent(dependency, d -> new ArrayList<>()).add(step.name);
+            }
+        }
+
+        List<String> compensated = Collections.synchronizedList(new ArrayList<>());
+        Map<String, Throwable> compensationFailures = new ConcurrentHashMap<>();
+        Map<String, CompletableFuture<Void>> undos = new HashMap<>();
+
+        // Reverse declaration order: a step's dependents have their undo futures already
+        List<Step> reversed = new ArrayList<>(steps.values());
+        Collections.reverse(reversed);
+        for (Step step : reversed) {
+            if (!completed.contains(step.name) && !(step.uncertain && started.contains(step.name))) {
+                continue;
+            }
+            List<String> completedDependents = new ArrayList<>();
+            for (String dependent : dependents.getOrDefault(step.name, List.of())) {
+                if (undos.containsKey(dependent)) {
+                    completedDependents.add(dependent);
+                }
+            }
+            CompletableFuture<Void> undo = new CompletableFuture<>();
+            settled(futures(completedDependents, undos)).thenRun(() -> {
+                if (step.compensation == null) {
+                    undo.complete(null);
+                } else {
+                    undo(step, undo, 1, COMPENSATION_BASE_DELAY_MILLIS);
+                }
+            });
+            undos.put(step.name, undo.whenComplete((v, e) -> {
+                if (e != null) {
+                    compensationFailures.put(step.name, e);
+                } else if (step.compensation != null) {
+                    compensated.add(step.name);
+                }
+            }));
+        }
+
+        return settled(undos.values()).thenApply(v -> new Result(first.step, first.cause,
+            List.copyOf(completed), List.copyOf(compensated), Map.copyOf(compensationFailures)));
+    }
+
+    // Runs one attempt of the compensation and schedules the next one if it throws
+    private void undo(Step step, CompletableFuture<Void> done, int attempt, long delayMillis) {
+        Runnable run = () -> {
+            try {
+                step.compensation.run();
+                done.complete(null);
+            } catch (RuntimeException e) {
+                if (attempt >= maxCompensationAttempts) {
+                    done.completeExceptionally(e);
+                    return;
+                }
+                long nextDelay = Math.min(COMPENSATION_MAX_DELAY_MILLIS, delayMillis * 2);
+                // The delay runs on the common pool's timer; the attempt itself goes back to the executor
+                CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS)
+                    .execute(() -> undo(step, done, attempt + 1, nextDelay));
+            } catch (Throwable e) {
+                done.completeExceptionally(e);
+                throw e;
+            }
+        };
+        try {
+            compensationExecutor.execute(run);
+        } catch (RejectedExecutionException e) {
+            // Only once the executor is shut down
+            done.completeExceptionally(e);
+        }
+    }
+
+    private static CompletableFuture<Void> allOf(List<String> names, Map<String, CompletableFuture<Void>> futures) {
+        return CompletableFuture.allOf(futures(names, futures).toArray(new CompletableFuture<?>[0]));
+    }
+
+    private static List<CompletableFuture<Void>> futures(List<String> names, Map<String, CompletableFuture<Void>> futures) {
+        List<CompletableFuture<Void>> result = new ArrayList<>(names.size());
+        for (String name : names) {
+            result.add(futures.get(name));
+        }
+        return result;
+    }
+
+    /** Completes normally once every future has completed, however it completed */
+    private static CompletableFuture<Void> settled(Collection<CompletableFuture<Void>> futures) {
+        return CompletableFuture.allOf(futures.stream()
+            .map(f -> f.handle((v, e) -> null))
+            .toArray(CompletableFuture<?>[]::new));
+    }
+
+    private static final class Step {
+        final String name;
+        final Executor executor;
+        final Action action;
+        final Runnable compensation;
+        final List<String> dependsOn;
+        final boolean uncertain;
+
+        Step(String name, Executor executor, Action action, Runnable compensation, List<String> dependsOn,
+             boolean uncertain) {
+            this.name = name;
+            this.executor = executor;
+            this.action = action;
+            this.compensation = compensation;
+            this.dependsOn = dependsOn;
+            this.uncertain = uncertain;
+        }
+    }
+
+    private static final class Failure {
+        final String step;
+        final Exception cause;
+
+        Failure(String step, Exception cause) {
+            this.step = step;
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * Outcome of one saga run.
+     */
+    public static final class Result {
+        private final String failedStep;
+        private final Exception failure;
+        private final List<String> completedSteps;
+        private final List<String> compensatedSteps;
+        private final Map<String, Throwable> compensationFailures;
+
+        Result(String failedStep, Exception failure, List<String> completedSteps,
+               List<String> compensatedSteps, Map<String, Throwable> compensationFailures) {
+            this.failedStep = failedStep;
+            this.failure = failure;
+            this.completedSteps = completedSteps;
+            this.compensatedSteps = compensatedSteps;
+            this.compensationFailures = compensationFailures;
+        }
+
+        public boolean isSuccess() { return failedStep == null; }
+        /** The first step that failed, or null on success */
+        public String getFailedStep() { return failedStep; }
+        public Exception getFailure() { return failure; }
+        public List<String> getCompletedSteps() { return completedSteps; }
+        public List<String> getCompensatedSteps() { return compensatedSteps; }
+        /** Compensations that could not run or ran out of attempts; those steps may need manual repair */
+        public Map<String, Throwable> getCompensationFailures() { return compensationFailures; }
+
+        @Override
+        public String toString() {
+            return isSuccess()
+                ? "Result{success, completed=" + completedSteps + "}"
+                : "Result{failed at " + failedStep + ": " + failure.getMessage()
+                    + ", compensated=" + compensatedSteps + ", compensationFailures=" + compensationFailures.keySet() + "}";
+        }
+    }
+}
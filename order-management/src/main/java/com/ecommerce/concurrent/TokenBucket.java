@@ -0,0 +1,93 @@
+package com.ecommerce.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free token bucket: at most {@code ratePerSecond} permits per second
+ * on average, with bursts of up to {@code burst} permits.
+ *
+ * Implemented as GCRA (generic cell rate algorithm): the whole state is one
+ * "theoretical arrival time" in an AtomicLong. Each permit pushes it one
+ * emission interval into the future, and a permit is available while it is
+ * less than {@code burst} intervals ahead of now. No timer thread refills
+ * the bucket.
+ */
+public class TokenBucket {
+    private final String name;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    // Theoretical arrival time of the next permit, in System.nanoTime() terms
+    private final AtomicLong nextFreeNanos;
+
+    public TokenBucket(String name, double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Invalid rate limit for " + name);
+        }
+        this.name = name;
+        this.intervalNanos = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+        this.toleranceNanos = (burst - 1) * intervalNanos;
+        this.nextFreeNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes a permit if one is available now.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long current = nextFreeNanos.get();
+            long tat = Math.max(current, now);
+            if (tat - now > toleranceNanos) {
+                return false;
+            }
+            if (nextFreeNanos.compareAndSet(current, tat + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reserves the next permit and waits until it is due. Callers that wait
+     * are served in the order they reserved.
+     * @throws InterruptedException if interrupted while waiting; the permit is then lost
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        long until = System.nanoTime() + waitNanos;
+        while (waitNanos > 0) {
+            LockSupport.parkNanos(this, waitNanos);
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Interrupted waiting for rate limit " + name);
+            }
+            waitNanos = until - System.nanoTime();
+        }
+    }
+
+    // Takes the next permit unconditionally and returns how long until it may be used
+    private long reserve() {
+        while (true) {
+            long now = System.nanoTime();
+            long current = nextFreeNanos.get();
+            long tat = Math.max(current, now);
+            if (nextFreeNanos.compareAndSet(current, tat + intervalNanos)) {
+                return Math.max(0, tat - toleranceNanos - now);
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getRatePerSecond() {
+        return (double) TimeUnit.SECONDS.toNanos(1) / intervalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenBucket{" + name + ", " + String.format("%.1f", getRatePerSecond()) + "/s, burst="
+                + (toleranceNanos / intervalNanos + 1) + "}";
+    }
+}
@@ -1,6 +1,55 @@
 package com.ecommerce.external;
 
+import com.ecommerce.concurrent.Deadline;
+import com.ecommerce.concurrent.DeadlineExceededException;
+import com.ecommerce.model.Order;
+import com.ecommerce.model.Product;
+import com.ecommerce.store.InventoryLedger;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class InventorySystem {
+    private final InventoryLedger ledger;
+    private final double tailProbability;
+    private final long tailMillis;
+
+    /**
+     * Inventory that does not track stock levels: every reservation succeeds
+     */
+    public InventorySystem() {
+        this(InventoryLedger.unlimited());
+    }
+
+    public InventorySystem(InventoryLedger ledger) {
+        this(ledger, 0, 0);
+    }
+
+    /**
+     * Simulates a system with a latency tail: each availability check takes an
+     * extra {@code tailMillis} with probability {@code tailProbability}
+     */
+    public InventorySystem(InventoryLedger ledger, double tailProbability, long tailMillis) {
+        this.ledger = ledger;
+        this.tailProbability = tailProbability;
+        this.tailMillis = tailMillis;
+    }
+
+    public InventoryLedger getLedger() {
+        return ledger;
+    }
+
+    /**
+     * Loads current stock levels of the given products into the ledger
+     */
+    public void stock(Collection<Product> products) {
+        for (Product product : products) {
+            ledger.setStock(product.getId(), product.getStockQuantity());
+        }
+    }
+
     /**
      * Simulates inventory check - takes 300ms
      * Returns true if all items available
@@ -8,7 +57,7 @@ public class InventorySystem {
     public boolean checkAvailability(Long orderId) {
         try {
             System.out.println("[Inventory] Checking stock for order " + orderId + "...");
-            Thread.sleep(300);
+            Thread.sleep(checkLatency());
             boolean available = Math.random() > 0.05; // 95% availability
             System.out.println("[Inventory] Order " + orderId + ": " + (available ? "IN STOCK" : "OUT OF STOCK"));
             return available;
@@ -19,29 +68,88 @@ public class InventorySystem {
     }
 
     /**
-     * Simulates reserving inventory - takes 200ms
+     * Inventory check bounded by a deadline: skipped if less than 300ms is left,
+     * interrupted if the deadline passes
+     * @throws DeadlineExceededException in either case
+     */
+    public boolean checkAvailability(Long orderId, Deadline deadline) {
+        return deadline.call("Inventory check for order " + orderId, 300, () -> checkAvailability(orderId));
+    }
+
+    /**
+     * Batch inventory check - one 300ms round trip for any number of orders
+     * Returns orderId -> available
      */
-    public void reserveInventory(Long orderId) {
+    public Map<Long, Boolean> checkAvailability(Collection<Long> orderIds) {
+        Map<Long, Boolean> results = new LinkedHashMap<>();
         try {
-            System.out.println("[Inventory] Reserving items for order " + orderId + "...");
-            Thread.sleep(200);
-            System.out.println("[Inventory] Order " + orderId + ": RESERVED");
+            System.out.println("[Inventory] Checking stock for " + orderIds.size() + " orders...");
+            Thread.sleep(checkLatency());
+            for (Long orderId : orderIds) {
+                results.put(orderId, Math.random() > 0.05); // 95% availability
+            }
+            System.out.println("[Inventory] Batch of " + orderIds.size() + " checked");
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            for (Long orderId : orderIds) {
+                results.put(orderId, false);
+            }
         }
+        return results;
     }
 
     /**
-     * BONUS: Release reserved inventory - for rollback scenarios
+     * Batch reservation - each order is reserved all-or-nothing on its own
+     * Returns orderId -> reserved
      */
-    public void releaseInventory(Long orderId) {
-        try {
-            System.out.println("[Inventory] Releasing reserved items for order " + orderId + "...");
-            Thread.sleep(50);
-            System.out.println("[Inventory] Order " + orderId + ": RELEASED");
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+    public Map<Long, Boolean> reserveInventory(List<Order> orders) {
+        Map<Long, Boolean> results = new LinkedHashMap<>();
+        for (Order order : orders) {
+            results.put(order.getId(), ledger.reserve(order.getId(), order.getItems()));
         }
+        System.out.println("[Inventory] Batch of " + orders.size() + " reservations processed");
+        return results;
+    }
+
+    /**
+     * Reserves stock for every item of the order, all-or-nothing
+     * Returns false if any item is short, or the order is already reserved
+     */
+    public boolean reserveInventory(Order order) {
+        System.out.println("[Inventory] Reserving items for order " + order.getId() + "...");
+        boolean reserved = ledger.reserve(order.getId(), order.getItems());
+        System.out.println("[Inventory] Order " + order.getId() + ": " + (reserved ? "RESERVED" : "INSUFFICIENT STOCK"));
+        return reserved;
+    }
+
+    /**
+     * Reservation bounded by a deadline: skipped once the deadline has passed
+     * @throws DeadlineExceededException if it was skipped
+     */
+    public boolean reserveInventory(Order order, Deadline deadline) {
+        deadline.check("Reservation for order " + order.getId(), 0);
+        return reserveInventory(order);
     }
-}
 
+    /**
+     * Consumes the order's reservation once the order has shipped
+     */
+    public void commitInventory(Order order) {
+        if (ledger.commit(order.getId())) {
+            System.out.println("[Inventory] Order " + order.getId() + ": COMMITTED");
+        }
+    }
+
+    /**
+     * Release reserved inventory - for rollback scenarios
+     */
+    public void releaseInventory(Order order) {
+        System.out.println("[Inventory] Releasing reserved items for order " + order.getId() + "...");
+        boolean released = ledger.release(order.getId());
+        System.out.println("[Inventory] Order " + order.getId() + ": " + (released ? "RELEASED" : "NOTHING RESERVED"));
+    }
+
+    private long checkLatency() {
+        return Math.random() < tailProbability ? 300 + tailMillis : 300;
+    }
+}
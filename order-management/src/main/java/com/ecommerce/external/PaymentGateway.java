@@ -1,5 +1,11 @@
 package com.ecommerce.external;
 
+import com.ecommerce.concurrent.Deadline;
+import com.ecommerce.concurrent.DeadlineExceededException;
+
+import java.util.ArrayList;
+import java.util.List;
+
 public class PaymentGateway {
     /**
      * Simulates payment processing - takes 500ms
@@ -17,5 +23,64 @@ public class PaymentGateway {
             return false;
         }
     }
-}
 
+    /**
+     * Payment bounded by a deadline: skipped if less than 500ms is left,
+     * interrupted if the deadline passes
+     * @throws DeadlineExceededException in either case
+     */
+    public boolean processPayment(Long orderId, double amount, Deadline deadline) {
+        return processPayment(orderId, amount, deadline, () -> { });
+    }
+
+    /**
+     * Same, calling onSend right before the request goes out, i.e. only if the
+     * deadline did not skip it; a charge may have been taken from then on
+     */
+    public boolean processPayment(Long orderId, double amount, Deadline deadline, Runnable onSend) {
+        return deadline.call("Payment for order " + orderId, 500, () -> {
+            onSend.run();
+            return processPayment(orderId, amount);
+        });
+    }
+
+    /**
+     * Simulates refunding a processed payment - takes 300ms
+     * Returns true if the refund went through
+     */
+    public boolean refundPayment(Long orderId, double amount) {
+        try {
+            System.out.println("[Payment] Refunding $" + String.format("%.2f", amount) + " for order " + orderId + "...");
+            Thread.sleep(300); // Simulate network delay
+            System.out.println("[Payment] Order " + orderId + ": REFUNDED");
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Batch authorization - one 500ms round trip for the whole batch
+     * Returns one result per request, in request order. Each payment succeeds or
+     * fails on its own; an invalid request only fails that request.
+     */
+    public List<Boolean> processPayments(List<PaymentRequest> requests) {
+        List<Boolean> results = new ArrayList<>(requests.size());
+        try {
+            System.out.println("[Payment] Processing batch of " + requests.size() + " payments...");
+            Thread.sleep(500); // Simulate network delay
+            for (PaymentRequest request : requests) {
+                boolean success = request.getAmountCents() > 0 && Math.random() > 0.1; // 90% success rate
+                System.out.println("[Payment] Order " + request.getOrderId() + ": " + (success ? "SUCCESS" : "FAILED"));
+                results.add(success);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            while (results.size() < requests.size()) {
+                results.add(false);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,28 @@
+package com.ecommerce.external;
+
+import com.ecommerce.model.Order;
+
+/**
+ * One order's payment within a batch authorization
+ */
+public class PaymentRequest {
+    private final Long orderId;
+    private final long amountCents;
+
+    public PaymentRequest(Long orderId, long amountCents) {
+        this.orderId = orderId;
+        this.amountCents = amountCents;
+    }
+
+    public static PaymentRequest forOrder(Order order) {
+        return new PaymentRequest(order.getId(), order.getTotalCents());
+    }
+
+    public Long getOrderId() { return orderId; }
+    public long getAmountCents() { return amountCents; }
+
+    @Override
+    public String toString() {
+        return "PaymentRequest{orderId=" + orderId + ", amountCents=" + amountCents + "}";
+    }
+}
@@ -1,13 +1,32 @@
 package com.ecommerce.external;
 
+import com.ecommerce.concurrent.Deadline;
+import com.ecommerce.concurrent.DeadlineExceededException;
+
 public class ShippingProvider {
+    private final double tailProbability;
+    private final long tailMillis;
+
+    public ShippingProvider() {
+        this(0, 0);
+    }
+
+    /**
+     * Simulates a provider with a latency tail: each quote takes an extra
+     * {@code tailMillis} with probability {@code tailProbability}
+     */
+    public ShippingProvider(double tailProbability, long tailMillis) {
+        this.tailProbability = tailProbability;
+        this.tailMillis = tailMillis;
+    }
+
     /**
      * Simulates getting shipping quote - takes 400ms
      */
     public double getShippingQuote(Long orderId, String city) {
         try {
             System.out.println("[Shipping] Getting quote for order " + orderId + " to " + city + "...");
-            Thread.sleep(400);
+            Thread.sleep(quoteLatency());
             double quote = 5.0 + Math.random() * 15.0; // $5-$20
             System.out.println("[Shipping] Order " + orderId + ": $" + String.format("%.2f", quote));
             return quote;
@@ -17,6 +36,32 @@ public class ShippingProvider {
         }
     }
 
+    /**
+     * Quote bounded by a deadline: skipped if less than 400ms is left,
+     * interrupted if the deadline passes
+     * @throws DeadlineExceededException in either case
+     */
+    public double getShippingQuote(Long orderId, String city, Deadline deadline) {
+        return deadline.call("Shipping quote for order " + orderId, 400, () -> getShippingQuote(orderId, city));
+    }
+
+    /**
+     * Simulates getting a quote for a destination - takes 400ms
+     * Quotes depend only on the destination, so callers may cache them per city.
+     */
+    public double getShippingQuote(String city) {
+        try {
+            System.out.println("[Shipping] Getting quote to " + city + "...");
+            Thread.sleep(quoteLatency());
+            double quote = 5.0 + Math.random() * 15.0; // $5-$20
+            System.out.println("[Shipping] " + city + ": $" + String.format("%.2f", quote));
+            return quote;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while getting shipping quote to " + city, e);
+        }
+    }
+
     /**
      * Simulates scheduling pickup - takes 300ms
      */
@@ -32,5 +77,17 @@ public class ShippingProvider {
             return null;
         }
     }
-}
 
+    /**
+     * Pickup bounded by a deadline: skipped if less than 300ms is left,
+     * interrupted if the deadline passes
+     * @throws DeadlineExceededException in either case
+     */
+    public String schedulePickup(Long orderId, Deadline deadline) {
+        return deadline.call("Pickup for order " + orderId, 300, () -> schedulePickup(orderId));
+    }
+
+    private long quoteLatency() {
+        return Math.random() < tailProbability ? 400 + tailMillis : 400;
+    }
+}
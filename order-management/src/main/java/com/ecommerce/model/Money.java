@@ -0,0 +1,19 @@
+package com.ecommerce.model;
+
+/**
+ * Helpers for exact money arithmetic in minor units (cents).
+ */
+public final class Money {
+    private Money() {}
+
+    /**
+     * Converts a decimal amount to cents, rounding half-up.
+     */
+    public static long toCents(double amount) {
+        return Math.round(amount * 100.0);
+    }
+
+    public static double toAmount(long cents) {
+        return cents / 100.0;
+    }
+}
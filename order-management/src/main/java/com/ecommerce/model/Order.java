@@ -1,20 +1,35 @@
 package com.ecommerce.model;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public class Order {
+    private static final AtomicReferenceFieldUpdater<Order, OrderStatus> STATUS =
+            AtomicReferenceFieldUpdater.newUpdater(Order.class, OrderStatus.class, "status");
+    private static final AtomicIntegerFieldUpdater<Order> CLAIMED =
+            AtomicIntegerFieldUpdater.newUpdater(Order.class, "claimed");
+
     private Long id;
     private Long customerId;
-    private List<OrderItem> items;
+    private final List<OrderItem> items;
+    private final List<OrderItem> itemsView;
+    private volatile long totalCents;
     private LocalDateTime orderDate;
-    private String status; // PENDING, CONFIRMED, SHIPPED, DELIVERED, CANCELLED
+    private volatile OrderStatus status;
+    private volatile OrderStatusListener statusListener;
+    private volatile int claimed;
 
     public Order(Long id, Long customerId, List<OrderItem> items,
-                 LocalDateTime orderDate, String status) {
+                 LocalDateTime orderDate, OrderStatus status) {
         this.id = id;
         this.customerId = customerId;
-        this.items = items;
+        this.items = new ArrayList<>(items);
+        this.itemsView = Collections.unmodifiableList(this.items);
+        this.totalCents = sumCents(this.items);
         this.orderDate = orderDate;
         this.status = status;
     }
@@ -22,16 +37,141 @@ public class Order {
     // Getters
     public Long getId() { return id; }
     public Long getCustomerId() { return customerId; }
-    public List<OrderItem> getItems() { return items; }
+    public List<OrderItem> getItems() { return itemsView; }
     public LocalDateTime getOrderDate() { return orderDate; }
-    public String getStatus() { return status; }
+    public OrderStatus getStatus() { return status; }
+
+    /**
+     * Moves the order to the given status.
+     * @throws IllegalStateException if the current status cannot transition to it
+     */
+    public void setStatus(OrderStatus status) {
+        if (!transitionTo(status)) {
+            throw new IllegalStateException("Order " + id + ": illegal transition "
+                    + this.status + " -> " + status);
+        }
+    }
+
+    /**
+     * Atomically moves the order to the target status if the state machine allows it
+     * from the current status. Returns false if it does not, so of several
+     * processors racing on the same transition exactly one succeeds.
+     */
+    public boolean transitionTo(OrderStatus target) {
+        while (true) {
+            OrderStatus current = status;
+            if (current == null || !current.canTransitionTo(target)) {
+                return false;
+            }
+            if (STATUS.compareAndSet(this, current, target)) {
+                notifyStatusChange(current, target);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Atomically moves the order from expected to target, if the transition is allowed.
+     */
+    public boolean compareAndSetStatus(OrderStatus expected, OrderStatus target) {
+        if (expected == null || !expected.canTransitionTo(target) || !STATUS.compareAndSet(this, expected, target)) {
+            return false;
+        }
+        notifyStatusChange(expected, target);
+        return true;
+    }
+
+    /**
+     * Takes a pending order for processing. Only the first caller succeeds, so an
+     * order is reserved and charged at most once however often it is submitted.
+     * @return false if the order is not pending or has already been claimed
+     */
+    public boolean claim() {
+        return status == OrderStatus.PENDING && CLAIMED.compareAndSet(this, 0, 1);
+    }
 
-    public void setStatus(String status) { this.status = status; }
+    /**
+     * Overwrites the status without validating the transition.
+     * Only for recovery, e.g. replaying the order event log after a restart.
+     */
+    public void restoreStatus(OrderStatus status) {
+        OrderStatus previous = STATUS.getAndSet(this, status);
+        if (previous != status) {
+            notifyStatusChange(previous, status);
+        }
+    }
+
+    private void notifyStatusChange(OrderStatus previous, OrderStatus current) {
+        OrderStatusListener listener = statusListener;
+        if (listener != null) {
+            listener.onStatusChange(this, previous, current);
+        }
+    }
+
+    private void notifyTotalChange(long previous, long current) {
+        OrderStatusListener listener = statusListener;
+        if (listener != null && previous != current) {
+            listener.onTotalChange(this, previous, current);
+        }
+    }
+
+    /**
+     * Registers a listener notified after every status change.
+     * Multiple listeners are chained in registration order.
+     */
+    public synchronized void addStatusListener(OrderStatusListener listener) {
+        OrderStatusListener current = statusListener;
+        statusListener = current == null ? listener : current.andThen(listener);
+    }
+
+    /**
+     * Adds an item, updates the cached total and notifies listeners of the new total.
+     */
+    public void addItem(OrderItem item) {
+        long previous;
+        long current;
+        synchronized (this) {
+            items.add(item);
+            previous = totalCents;
+            current = previous + item.getLineTotalCents();
+            totalCents = current;
+        }
+        notifyTotalChange(previous, current);
+    }
+
+    /**
+     * Removes an item, updates the cached total and notifies listeners of the new total.
+     */
+    public boolean removeItem(OrderItem item) {
+        long previous;
+        long current;
+        synchronized (this) {
+            if (!items.remove(item)) {
+                return false;
+            }
+            previous = totalCents;
+            current = previous - item.getLineTotalCents();
+            totalCents = current;
+        }
+        notifyTotalChange(previous, current);
+        return true;
+    }
+
+    /**
+     * Order total in cents, maintained incrementally as items change.
+     */
+    public long getTotalCents() { return totalCents; }
 
     public double getTotalAmount() {
-        return items.stream()
-            .mapToDouble(item -> item.getPrice() * item.getQuantity())
-            .sum();
+        return Money.toAmount(totalCents);
+    }
+
+    private static long sumCents(List<OrderItem> items) {
+        long sum = 0;
+        for (OrderItem item : items) {
+            sum += item.getLineTotalCents();
+        }
+        return sum;
     }
 
     @Override
@@ -5,12 +5,16 @@ public class OrderItem {
     private String productName;
     private int quantity;
     private double price;
+    private final long priceCents;
+    private final long lineTotalCents;
 
     public OrderItem(Long productId, String productName, int quantity, double price) {
         this.productId = productId;
         this.productName = productName;
         this.quantity = quantity;
         this.price = price;
+        this.priceCents = Money.toCents(price);
+        this.lineTotalCents = priceCents * quantity;
     }
 
     // Getters
@@ -18,6 +22,8 @@ public class OrderItem {
     public String getProductName() { return productName; }
     public int getQuantity() { return quantity; }
     public double getPrice() { return price; }
+    public long getPriceCents() { return priceCents; }
+    public long getLineTotalCents() { return lineTotalCents; }
 
     @Override
     public String toString() {
@@ -0,0 +1,34 @@
+package com.ecommerce.model;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Order lifecycle state machine:
+ * PENDING -> CONFIRMED -> SHIPPED -> DELIVERED, and PENDING/CONFIRMED -> CANCELLED.
+ */
+public enum OrderStatus {
+    PENDING,
+    CONFIRMED,
+    SHIPPED,
+    DELIVERED,
+    CANCELLED;
+
+    private Set<OrderStatus> next;
+
+    static {
+        PENDING.next = EnumSet.of(CONFIRMED, CANCELLED);
+        CONFIRMED.next = EnumSet.of(SHIPPED, CANCELLED);
+        SHIPPED.next = EnumSet.of(DELIVERED);
+        DELIVERED.next = EnumSet.noneOf(OrderStatus.class);
+        CANCELLED.next = EnumSet.noneOf(OrderStatus.class);
+    }
+
+    public boolean canTransitionTo(OrderStatus target) {
+        return next.contains(target);
+    }
+
+    public boolean isTerminal() {
+        return next.isEmpty();
+    }
+}
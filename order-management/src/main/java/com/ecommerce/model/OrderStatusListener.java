@@ -0,0 +1,34 @@
+package com.ecommerce.model;
+
+/**
+ * Callback fired after an order's status changes. Each successful transition
+ * is reported exactly once, with the status it replaced.
+ * Used by stores that keep secondary indexes or counters on status.
+ *
+ * Stores that also copy the order total override {@link #onTotalChange},
+ * which fires after an item is added or removed.
+ */
+@FunctionalInterface
+public interface OrderStatusListener {
+    void onStatusChange(Order order, OrderStatus oldStatus, OrderStatus newStatus);
+
+    default void onTotalChange(Order order, long oldTotalCents, long newTotalCents) {
+    }
+
+    default OrderStatusListener andThen(OrderStatusListener next) {
+        OrderStatusListener first = this;
+        return new OrderStatusListener() {
+            @Override
+            public void onStatusChange(Order order, OrderStatus oldStatus, OrderStatus newStatus) {
+                first.onStatusChange(order, oldStatus, newStatus);
+                next.onStatusChange(order, oldStatus, newStatus);
+            }
+
+            @Override
+            public void onTotalChange(Order order, long oldTotalCents, long newTotalCents) {
+                first.onTotalChange(order, oldTotalCents, newTotalCents);
+                next.onTotalChange(order, oldTotalCents, newTotalCents);
+            }
+        };
+    }
+}
@@ -1,11 +1,49 @@
 package com.ecommerce.service;
 
+import com.ecommerce.concurrent.ExecutionStrategy;
+import com.ecommerce.concurrent.RateLimiterRegistry;
+import com.ecommerce.concurrent.TokenBucket;
 import com.ecommerce.model.Customer;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class BulkNotificationSender {
+    /** Name of the email provider's rate limit in the registry */
+    public static final String EMAIL_PROVIDER_LIMIT = "email-provider";
+    private static final int MAX_DISPATCH_WORKERS = 50;
+    // A worker collects permits for this much sending before it sends them as one batch
+    private static final int PERMIT_SLICE_MILLIS = 100;
+
     private NotificationService notificationService = new NotificationService();
+    private final ExecutionStrategy executionStrategy;
+    private final RateLimiterRegistry rateLimits;
+
+    public BulkNotificationSender() {
+        this(ExecutionStrategy.fromConfig());
+    }
+
+    /**
+     * @param executionStrategy threads that send the emails
+     */
+    public BulkNotificationSender(ExecutionStrategy executionStrategy) {
+        this(executionStrategy, new RateLimiterRegistry());
+    }
+
+    /**
+     * @param executionStrategy threads that send the emails
+     * @param rateLimits provider ({@link #EMAIL_PROVIDER_LIMIT}) and per-domain
+     *                   ({@link #domainLimitName}) limits that rate-limited sends respect
+     */
+    public BulkNotificationSender(ExecutionStrategy executionStrategy, RateLimiterRegistry rateLimits) {
+        this.executionStrategy = executionStrategy;
+        this.rateLimits = rateLimits;
+    }
+
+    public RateLimiterRegistry getRateLimits() {
+        return rateLimits;
+    }
 
     /**
      * TASK A: Send promotional email to all customers SEQUENTIALLY
@@ -25,28 +63,32 @@ public class BulkNotificationSender {
 
     /**
      * TASK B: Send promotional email to all customers CONCURRENTLY
-     * Use a thread pool of 10 threads.
+     * Use a thread pool of 10 threads (or a virtual thread per email in VIRTUAL mode).
      * Measure time taken.
+     *
+     * Every recipient gets the same email, so recipients go out in provider-sized
+     * batches (one 200ms send per NotificationService.MAX_BATCH_SIZE recipients)
+     * and the batches are sent concurrently.
      */
     public void sendPromoEmailsConcurrent(List<Customer> customers,
                                           String subject, String body) {
         long startTime = System.currentTimeMillis();
-        ExecutorService executor = Executors.newFixedThreadPool(10);
+        ExecutorService executor = executionStrategy.newExecutor("promo-email", 10);
         
-        List<Future<?>> futures = new ArrayList<>();
+        List<Future<List<Boolean>>> futures = new ArrayList<>();
         
-        // Submit all email tasks to executor
-        for (Customer customer : customers) {
-            Future<?> future = executor.submit(() -> 
-                notificationService.sendEmail(customer.getEmail(), subject, body)
-            );
-            futures.add(future);
+        // Submit one batch send per chunk of recipients
+        for (int from = 0; from < customers.size(); from += NotificationService.MAX_BATCH_SIZE) {
+            List<String> recipients = emails(customers.subList(from,
+                Math.min(customers.size(), from + NotificationService.MAX_BATCH_SIZE)));
+            futures.add(executor.submit(() -> notificationService.sendEmailBatch(subject, body, recipients)));
         }
         
         // Wait for all to complete
-        for (Future<?> future : futures) {
+        int failed = 0;
+        for (Future<List<Boolean>> future : futures) {
             try {
-                future.get();
+                failed += countFailed(future.get());
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -54,7 +96,8 @@ public class BulkNotificationSender {
         
         executor.shutdown();
         long endTime = System.currentTimeMillis();
-        System.out.println("Concurrent emails took: " + (endTime - startTime) + "ms");
+        System.out.println("Concurrent emails took: " + (endTime - startTime) + "ms"
+            + (failed > 0 ? " (" + failed + " failed)" : ""));
     }
 
     /**
@@ -63,40 +106,102 @@ public class BulkNotificationSender {
      * Some email providers limit how many emails you can send per second.
      * Implement sending with a maximum of 5 emails per second.
      *
-     * Hint: Use ScheduledExecutorService or add delays
+     * A token bucket spaces the emails exactly 1/maxPerSecond apart, and a fixed
+     * set of dispatch workers pulls recipients from the iterator, about 100ms
+     * worth at a time, so memory stays the same for 50 or 5 million recipients.
+     * Every email also waits for the registered provider limit and the limit of the
+     * recipient's domain. Each worker sends its recipients as one batch once all of
+     * their permits are granted, so the provider sees at most 100ms of emails at
+     * once rather than a second's worth (one email at a time at low rates).
      */
-    public void sendPromoEmailsRateLimited(List<Customer> customers,
+    public void sendPromoEmailsRateLimited(Iterable<Customer> customers,
                                            String subject, String body,
                                            int maxPerSecond) {
         long startTime = System.currentTimeMillis();
-        ScheduledExecutorService executor = Executors.newScheduledThreadPool(maxPerSecond);
+        TokenBucket campaignLimit = new TokenBucket("promo-campaign", maxPerSecond, 1);
+        int batchSize = Math.max(1, Math.min(maxPerSecond * PERMIT_SLICE_MILLIS / 1000,
+            NotificationService.MAX_BATCH_SIZE));
+        // One worker collects permits while the others send
+        int workers = Math.min(MAX_DISPATCH_WORKERS, maxPerSecond / batchSize + 1);
+        ExecutorService executor = executionStrategy.newExecutor("promo-dispatch", workers);
         
-        long delayMs = 1000 / maxPerSecond; // Delay between emails in milliseconds
-        CountDownLatch latch = new CountDownLatch(customers.size());
+        // Recipients are pulled lazily; only the iterator is shared between workers
+        Iterator<Customer> recipients = customers.iterator();
+        ReentrantLock recipientsLock = new ReentrantLock();
+        AtomicLong sent = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
         
-        for (int i = 0; i < customers.size(); i++) {
-            final Customer customer = customers.get(i);
-            long delay = i * delayMs;
-            
-            executor.schedule(() -> {
-                try {
-                    notificationService.sendEmail(customer.getEmail(), subject, body);
-                } finally {
-                    latch.countDown();
+        List<Future<?>> dispatchers = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            dispatchers.add(executor.submit(() -> {
+                List<String> batch = new ArrayList<>(batchSize);
+                while (true) {
+                    batch.clear();
+                    recipientsLock.lock();
+                    try {
+                        while (batch.size() < batchSize && recipients.hasNext()) {
+                            batch.add(recipients.next().getEmail());
+                        }
+                    } finally {
+                        recipientsLock.unlock();
+                    }
+                    if (batch.isEmpty()) {
+                        return null;
+                    }
+                    for (String email : batch) {
+                        campaignLimit.acquire();
+                        rateLimits.acquire(EMAIL_PROVIDER_LIMIT, domainLimitName(email));
+                    }
+                    int batchFailed = countFailed(notificationService.sendEmailBatch(subject, body, batch));
+                    sent.addAndGet(batch.size() - batchFailed);
+                    failed.addAndGet(batchFailed);
                 }
-            }, delay, TimeUnit.MILLISECONDS);
+            }));
         }
         
         // Wait for all emails to be sent
         try {
-            latch.await();
+            for (Future<?> dispatcher : dispatchers) {
+                dispatcher.get();
+            }
         } catch (InterruptedException e) {
+            dispatchers.forEach(dispatcher -> dispatcher.cancel(true));
             Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            dispatchers.forEach(dispatcher -> dispatcher.cancel(true));
+            e.getCause().printStackTrace();
         }
         
         executor.shutdown();
         long endTime = System.currentTimeMillis();
-        System.out.println("Rate-limited emails (" + maxPerSecond + "/sec) took: " + (endTime - startTime) + "ms");
+        System.out.println("Rate-limited emails (" + maxPerSecond + "/sec) sent " + sent.get()
+            + (failed.get() > 0 ? " (" + failed.get() + " failed)" : "")
+            + " in " + (endTime - startTime) + "ms");
+    }
+
+    private static List<String> emails(List<Customer> customers) {
+        List<String> emails = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            emails.add(customer.getEmail());
+        }
+        return emails;
+    }
+
+    private static int countFailed(List<Boolean> results) {
+        int failed = 0;
+        for (Boolean result : results) {
+            if (!result) {
+                failed++;
+            }
+        }
+        return failed;
     }
-}
 
+    /**
+     * Name of the rate limit for recipients at the email address's domain,
+     * e.g. "email-domain:gmail.com"
+     */
+    public static String domainLimitName(String email) {
+        return "email-domain:" + email.substring(email.lastIndexOf('@') + 1).toLowerCase(Locale.ROOT);
+    }
+}
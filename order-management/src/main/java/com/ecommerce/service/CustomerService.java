@@ -1,50 +1,86 @@
 package com.ecommerce.service;
 
 import com.ecommerce.model.Customer;
+import com.ecommerce.store.CustomerRegistry;
+import com.ecommerce.store.Leaderboard;
+import com.ecommerce.store.TopK;
 
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Customer queries backed by an indexed {@link CustomerRegistry}.
+ *
+ * Unlike a plain list, the registry keeps ids and emails unique: registering a
+ * second customer with a known id, or with an email already registered (ignoring
+ * case and surrounding spaces), fails with IllegalArgumentException. Use
+ * {@link #updateCustomer} to change a registered customer.
+ */
 public class CustomerService {
-    private List<Customer> customers;
+    private static final int LEADERBOARD_SIZE = 100;
 
+    private final CustomerRegistry registry = new CustomerRegistry();
+    private final Leaderboard<Customer> topSpenders =
+            new Leaderboard<>(LEADERBOARD_SIZE, Customer::getId, Customer::getTotalPurchases);
+
+    /**
+     * @throws IllegalArgumentException if two customers share an id or an email
+     */
     public CustomerService(List<Customer> customers) {
-        this.customers = customers;
+        customers.forEach(this::addCustomer);
+    }
+
+    // 0. Register a new customer (throws IllegalArgumentException if its id or email is taken);
+    //    indexes are maintained incrementally.
+    //    Writes are serialized (the registry does so anyway) to keep the leaderboard in step with it
+    public synchronized void addCustomer(Customer customer) {
+        registry.add(customer);
+        topSpenders.update(customer);
+    }
+
+    // Replaces a registered customer, matched by id
+    public synchronized void updateCustomer(Customer customer) {
+        registry.update(customer);
+        topSpenders.update(customer);
+    }
+
+    // Adds a purchase to a customer's running total (keeps the top-spenders leaderboard current)
+    public synchronized Customer recordPurchase(Long customerId, double amount) {
+        Customer current = registry.findById(customerId)
+                .orElseThrow(() -> new IllegalArgumentException("Customer " + customerId + " is not registered"));
+        Customer updated = new Customer(current.getId(), current.getName(), current.getEmail(),
+                current.getCity(), current.isPremium(), current.getTotalPurchases() + amount);
+        updateCustomer(updated);
+        return updated;
     }
 
     // 1. Get all premium customers
     public List<Customer> getPremiumCustomers() {
-        return customers.stream()
-                .filter(Customer::isPremium)
-                .collect(Collectors.toList());
+        return registry.findPremium();
     }
 
-    // 2. Get customers from a specific city
+    // 2. Get customers from a specific city (null finds customers without a city)
     public List<Customer> getCustomersByCity(String city) {
-        return customers.stream()
-                .filter(c -> Objects.equals(c.getCity(), city))
-                .collect(Collectors.toList());
+        return registry.findByCity(city);
     }
 
-    // 3. Find customer by email (return Optional)
+    // 3. Find customer by email (return Optional); emails match case-insensitively
     public Optional<Customer> findByEmail(String email) {
-        return customers.stream()
-                .filter(c -> Objects.equals(c.getEmail(), email))
-                .findFirst();
+        return registry.findByEmail(email);
     }
 
     // 4. Get customer emails as a comma-separated string
     public String getEmailList() {
-        return customers.stream()
+        return registry.all().stream()
                 .map(Customer::getEmail)
                 .collect(Collectors.joining(", "));
     }
 
     // 5. Get average total purchases of premium customers
     public double getAveragePremiumPurchases() {
-        return customers.stream()
+        return registry.all().stream()
                 .filter(Customer::isPremium)
                 .mapToDouble(Customer::getTotalPurchases)
                 .average()
@@ -52,35 +88,37 @@ public class CustomerService {
     }
 
     // 6. Get top N customers by total purchases
+    //    Served from the leaderboard; beyond its size, falls back to a bounded-heap scan
     public List<Customer> getTopCustomers(int n) {
-        return customers.stream()
-                .sorted(Comparator.comparingDouble(Customer::getTotalPurchases).reversed())
-                .limit(n)
-                .collect(Collectors.toList());
+        if (n <= topSpenders.capacity()) {
+            return new ArrayList<>(topSpenders.top(n));
+        }
+        return registry.all().parallelStream()
+                .collect(TopK.greatest(n, Comparator.comparingDouble(Customer::getTotalPurchases)
+                        .thenComparing(Customer::getId, Comparator.reverseOrder())));
     }
 
     // 7. Count customers per city
     public Map<String, Long> getCustomerCountByCity() {
-        return customers.stream()
+        return registry.all().stream()
                 .collect(Collectors.groupingBy(Customer::getCity, Collectors.counting()));
     }
 
     // 8. Partition customers into premium and non-premium
     public Map<Boolean, List<Customer>> partitionByPremium() {
-        return customers.stream()
-                .collect(Collectors.partitioningBy(Customer::isPremium));
+        return registry.partitionByPremium();
     }
 
     // 9. Transform customers using a provided function
     public <R> List<R> transformCustomers(Function<Customer, R> transformer) {
-        return customers.stream()
+        return registry.all().stream()
                 .map(transformer)
                 .collect(Collectors.toList());
     }
 
     // 10. Process each customer with a provided consumer
     public void processCustomers(Consumer<Customer> processor) {
-        customers.stream().forEach(processor);
+        registry.all().forEach(processor);
     }
 }
 
@@ -0,0 +1,25 @@
+package com.ecommerce.service;
+
+/**
+ * One email within a batch send
+ */
+public class EmailMessage {
+    private final String to;
+    private final String subject;
+    private final String body;
+
+    public EmailMessage(String to, String subject, String body) {
+        this.to = to;
+        this.subject = subject;
+        this.body = body;
+    }
+
+    public String getTo() { return to; }
+    public String getSubject() { return subject; }
+    public String getBody() { return body; }
+
+    @Override
+    public String toString() {
+        return "EmailMessage{to=" + to + ", subject=" + subject + "}";
+    }
+}
@@ -0,0 +1,97 @@
+package com.ecommerce.service;
+
+import com.ecommerce.concurrent.ExecutionMode;
+import com.ecommerce.concurrent.ExecutionStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * BONUS 5: Compare fixed thread pools vs virtual threads for blocking calls
+ */
+public class ExecutionModeBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionModeBenchmark.class);
+    private static final int POOL_SIZE = 10;
+    private static final long CALL_MILLIS = 100;
+
+    /**
+     * Simulate a blocking external call (payment, inventory, email...)
+     */
+    private void blockingCall() {
+        try {
+            Thread.sleep(CALL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Run the given number of blocking calls with a strategy and wait for all of them
+     */
+    public long runCalls(ExecutionStrategy strategy, int calls) {
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor = strategy.newExecutor("benchmark", POOL_SIZE);
+        try {
+            List<Future<?>> futures = new ArrayList<>(calls);
+            for (int i = 0; i < calls; i++) {
+                futures.add(executor.submit(this::blockingCall));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            logger.error("Benchmark run failed", e);
+        } finally {
+            executor.shutdown();
+        }
+        long duration = System.currentTimeMillis() - startTime;
+        logger.info("{} ran {} calls in {}ms", strategy, calls, duration);
+        return duration;
+    }
+
+    /**
+     * Compare performance with different numbers of concurrent calls
+     */
+    public void comparePerformance() {
+        // Without virtual threads both columns run on the fixed pool, so keep the runs short
+        int[] sizes = ExecutionMode.isVirtualThreadsSupported()
+            ? new int[]{10, 100, 1000, 10000}
+            : new int[]{10, 100, 500};
+
+        System.out.println("\n=== EXECUTION MODE PERFORMANCE COMPARISON ===\n");
+        if (!ExecutionMode.isVirtualThreadsSupported()) {
+            System.out.println("Virtual threads need Java 21+; VIRTUAL falls back to FIXED on this JVM.\n");
+        }
+        System.out.println("Calls  | Fixed (" + POOL_SIZE + ") | Virtual | Speedup");
+        System.out.println("-------|------------|---------|--------");
+
+        // Warm up JVM
+        runCalls(ExecutionMode.FIXED, POOL_SIZE);
+        runCalls(ExecutionMode.VIRTUAL, POOL_SIZE);
+
+        for (int size : sizes) {
+            // A fixed pool needs calls / POOL_SIZE rounds; skip runs that would take minutes
+            long fixedDuration = size <= 1000 ? runCalls(ExecutionMode.FIXED, size) : -1;
+            long virtualDuration = runCalls(ExecutionMode.VIRTUAL, size);
+
+            if (fixedDuration < 0) {
+                System.out.printf("%6d | %10s | %5dms | %s%n", size, "skipped", virtualDuration, "-");
+            } else {
+                double speedup = (double) fixedDuration / virtualDuration;
+                System.out.printf("%6d | %8dms | %5dms | %.2fx%n",
+                    size, fixedDuration, virtualDuration, speedup);
+            }
+        }
+
+        System.out.println("\nNote: Virtual threads are beneficial for:");
+        System.out.println("  - Many concurrent blocking calls (I/O, remote services, sleeps)");
+        System.out.println("  - Thread-per-request code that should stay simple and blocking");
+        System.out.println("\nKeep fixed pools for:");
+        System.out.println("  - CPU-bound work (more threads than cores does not help)");
+        System.out.println("  - Calls to dependencies that must be capped at a few in flight");
+    }
+}
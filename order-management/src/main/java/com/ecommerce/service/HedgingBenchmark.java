@@ -0,0 +1,103 @@
+package com.ecommerce.service;
+
+import com.ecommerce.concurrent.HedgedCaller;
+import com.ecommerce.concurrent.NamedThreadFactory;
+import com.ecommerce.external.InventorySystem;
+import com.ecommerce.external.ShippingProvider;
+import com.ecommerce.store.InventoryLedger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * BONUS 6: Compare tail latency of idempotent reads with and without hedging
+ *
+ * The simulated providers get a latency tail: 5% of calls take an extra second.
+ * A hedge sent after the p95 latency almost always returns before that tail.
+ */
+public class HedgingBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(HedgingBenchmark.class);
+    private static final int CALLS = 200;
+    private static final int CONCURRENCY = 20;
+    private static final double TAIL_PROBABILITY = 0.05;
+    private static final long TAIL_MILLIS = 1_000;
+
+    /**
+     * Make the given calls from CONCURRENCY threads and return each call's latency in ms, sorted
+     */
+    public long[] measure(String label, int calls, Callable<?> call) {
+        ExecutorService callers = Executors.newFixedThreadPool(CONCURRENCY, new NamedThreadFactory("hedging-benchmark"));
+        long[] latencies = new long[calls];
+        try {
+            List<Future<Long>> futures = new ArrayList<>(calls);
+            for (int i = 0; i < calls; i++) {
+                futures.add(callers.submit(() -> {
+                    long start = System.nanoTime();
+                    call.call();
+                    return (System.nanoTime() - start) / 1_000_000;
+                }));
+            }
+            for (int i = 0; i < calls; i++) {
+                latencies[i] = futures.get(i).get();
+            }
+        } catch (Exception e) {
+            logger.error("Benchmark run {} failed", label, e);
+        } finally {
+            callers.shutdown();
+        }
+        Arrays.sort(latencies);
+        logger.info("{}: p50={}ms p99={}ms", label, percentile(latencies, 0.50), percentile(latencies, 0.99));
+        return latencies;
+    }
+
+    /**
+     * Compare p50/p99 of shipping quotes and availability checks with and without hedging
+     */
+    public void comparePerformance() {
+        ShippingProvider shipping = new ShippingProvider(TAIL_PROBABILITY, TAIL_MILLIS);
+        InventorySystem inventory = new InventorySystem(new InventoryLedger(), TAIL_PROBABILITY, TAIL_MILLIS);
+
+        System.out.println("\n=== HEDGED REQUESTS TAIL LATENCY COMPARISON ===\n");
+        System.out.println(CALLS + " calls, " + CONCURRENCY + " at a time, "
+            + (int) (TAIL_PROBABILITY * 100) + "% of calls +" + TAIL_MILLIS + "ms\n");
+        System.out.println("Call         | Mode    |   p50  |   p99  | Hedges");
+        System.out.println("-------------|---------|--------|--------|-------");
+
+        long[] plainQuotes = measure("quote", CALLS, () -> shipping.getShippingQuote("Mumbai"));
+        try (HedgedCaller hedger = new HedgedCaller("benchmark-quote", 0.95, 450, 0.1)) {
+            long[] hedgedQuotes = measure("hedged quote", CALLS,
+                () -> hedger.call(() -> shipping.getShippingQuote("Mumbai")));
+            printRow("quote", "plain", plainQuotes, "-");
+            printRow("quote", "hedged", hedgedQuotes, String.valueOf(hedger.getHedgeCount()));
+        }
+
+        long[] plainChecks = measure("availability", CALLS, () -> inventory.checkAvailability(1L));
+        try (HedgedCaller hedger = new HedgedCaller("benchmark-availability", 0.95, 350, 0.1)) {
+            long[] hedgedChecks = measure("hedged availability", CALLS,
+                () -> hedger.call(() -> inventory.checkAvailability(1L)));
+            printRow("availability", "plain", plainChecks, "-");
+            printRow("availability", "hedged", hedgedChecks, String.valueOf(hedger.getHedgeCount()));
+        }
+
+        System.out.println("\nNote: Hedging only suits idempotent reads (quotes, stock checks);");
+        System.out.println("  payments and reservations must never be sent twice.");
+        System.out.println("  The hedge budget keeps extra load at a few percent even when the dependency slows down.");
+    }
+
+    private void printRow(String call, String mode, long[] latencies, String hedges) {
+        System.out.printf("%-12s | %-7s | %4dms | %4dms | %s%n",
+            call, mode, percentile(latencies, 0.50), percentile(latencies, 0.99), hedges);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
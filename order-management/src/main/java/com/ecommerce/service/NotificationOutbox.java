@@ -0,0 +1,670 @@
+package com.ecommerce.service;
+
+import com.ecommerce.concurrent.DependencyGuard;
+import com.ecommerce.concurrent.NamedThreadFactory;
+import com.ecommerce.concurrent.RateLimiterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Durable outbox for notification emails.
+ *
+ * {@link #enqueue} appends the message to the current segment file and returns
+ * without waiting for an fsync, so it takes microseconds and the message
+ * survives a JVM crash (the write is already with the OS). A single dispatcher
+ * thread reads messages in append order and sends them in batches of up to
+ * {@link NotificationService#MAX_BATCH_SIZE} through the notification guard,
+ * within the provider and domain rate limits. A failed batch call is retried
+ * with jittered backoff until it goes through. After each batch the
+ * dispatcher saves how far it got in a checkpoint file, and deletes segments
+ * that are fully delivered.
+ *
+ * Delivery is at-least-once: a crash between a send and its checkpoint sends
+ * that batch again on restart. A message the provider rejects (e.g. an invalid
+ * address) is counted and not retried. A failed fsync or checkpoint is retried
+ * like a failed send. A record that fails its checksum is skipped, and its
+ * segment copied to {@code <segment>.corrupt} for inspection; if the damage
+ * hides where the next record starts, the rest of that segment is skipped. Only
+ * when the segment being written is damaged that way does the dispatcher stop;
+ * {@link #isHealthy()} then turns false and {@link #enqueue} fails.
+ *
+ * fsyncs run outside the enqueue lock: a full segment is handed to the
+ * dispatcher, which forces and closes it before sending anything after it.
+ *
+ * Records are crc(4) length(4) payload(length), the payload being the
+ * recipient, subject and body as length-prefixed UTF-8, and the CRC covering
+ * length and payload. Segments are named after the sequence number of their
+ * first record. On open, a torn tail of the last segment is truncated.
+ */
+public class NotificationOutbox implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(NotificationOutbox.class);
+
+    private static final long SEGMENT_BYTES = 16L << 20;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String QUARANTINE_SUFFIX = ".corrupt";
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_PAYLOAD_SIZE = 1 << 20;
+    private static final long RETRY_BASE_DELAY_MILLIS = 100;
+    private static final long RETRY_MAX_DELAY_MILLIS = 5_000;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5_000;
+
+    private final Path directory;
+    private final NotificationService notificationService;
+    private final DependencyGuard guard;
+    private final RateLimiterRegistry rateLimits;
+    private final Thread dispatcher;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    // Guarded by lock
+    private FileChannel writeChannel;
+    // Full segments not yet forced and closed by the dispatcher
+    private final List<FileChannel> rolledOver = new ArrayList<>();
+    private long appendedSeq;
+    private boolean closed;
+    private IOException failure;
+    private Exception dispatcherFailure;
+
+    // Dispatcher thread only
+    private FileChannel readChannel;
+    private long readSegmentBase;
+    private long readPosition;
+    private long readSeq;
+
+    private volatile long checkpointSeq;
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder corrupt = new LongAdder();
+
+    private NotificationOutbox(Path directory, NotificationService notificationService,
+                               DependencyGuard guard, RateLimiterRegistry rateLimits) {
+        this.directory = directory;
+        this.notificationService = notificationService;
+        this.guard = guard;
+        this.rateLimits = rateLimits;
+        this.dispatcher = new NamedThreadFactory("notification-outbox").newThread(this::dispatchLoop);
+    }
+
+    /**
+     * Opens (or creates) the outbox in the directory and starts dispatching
+     * whatever was not delivered before.
+     * @param guard circuit breaker and concurrency limit of the notification service
+     * @param rateLimits provider and per-domain limits, as used by {@link BulkNotificationSender}
+     */
+    public static NotificationOutbox open(Path directory, NotificationService notificationService,
+                                          DependencyGuard guard, RateLimiterRegistry rateLimits) throws IOException {
+        Files.createDirectories(directory);
+        NotificationOutbox outbox = new NotificationOutbox(directory, notificationService, guard, rateLimits);
+        outbox.recover();
+        outbox.dispatcher.start();
+        return outbox;
+    }
+
+    /**
+     * Appends a message for delivery. It is on disk from the OS's point of view
+     * when this returns; the dispatcher fsyncs before sending.
+     * @throws IOException if the outbox is closed, an earlier write failed or the dispatcher stopped
+     */
+    public void enqueue(EmailMessage message) throws IOException {
+        ByteBuffer record = encode(message);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Notification outbox is closed");
+            }
+            if (failure != null) {
+                throw new IOException("Notification outbox is unusable after an earlier write failure", failure);
+            }
+            if (dispatcherFailure != null) {
+                throw new IOException("Notification outbox dispatcher stopped; messages would not be sent",
+                        dispatcherFailure);
+            }
+            try {
+                if (writeChannel.size() >= SEGMENT_BYTES) {
+                    // The dispatcher forces and closes the full segment outside the lock
+                    FileChannel next = openSegment(appendedSeq);
+                    rolledOver.add(writeChannel);
+                    writeChannel = next;
+                }
+                while (record.hasRemaining()) {
+                    writeChannel.write(record);
+                }
+            } catch (IOException e) {
+                // A partly written record would hide every later one
+                failure = e;
+                throw e;
+            }
+            appendedSeq++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Messages enqueued but not yet checkpointed as sent */
+    public long getPendingCount() {
+        lock.lock();
+        try {
+            return appendedSeq - checkpointSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * False once a write failed or the dispatcher stopped; messages then stay
+     * undelivered until the outbox is repaired and reopened.
+     */
+    public boolean isHealthy() {
+        lock.lock();
+        try {
+            return failure == null && dispatcherFailure == null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDeliveredCount() { return delivered.sum(); }
+    /** Messages the provider refused; they are not retried */
+    public long getRejectedCount() { return rejected.sum(); }
+    /** Batch calls that failed and were tried again */
+    public long getRetryCount() { return retries.sum(); }
+    /** Messages skipped because their record was damaged */
+    public long getCorruptCount() { return corrupt.sum(); }
+
+    /**
+     * Stops the dispatcher after its current batch; undelivered messages stay in
+     * the outbox for the next open.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            dispatcher.join(CLOSE_TIMEOUT_MILLIS);
+            if (dispatcher.isAlive()) {
+                // Stuck waiting for a rate limit or the provider; the batch is resent on the next open
+                dispatcher.interrupt();
+                dispatcher.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            rolledOver.add(writeChannel);
+            for (FileChannel channel : rolledOver) {
+                // A channel is closed already if the interrupt above hit the dispatcher during a force
+                if (channel.isOpen()) {
+                    channel.force(false);
+                    channel.close();
+                }
+            }
+            rolledOver.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "NotificationOutbox{pending=" + getPendingCount() + ", delivered=" + getDeliveredCount()
+                + ", rejected=" + getRejectedCount() + ", retries=" + getRetryCount()
+                + ", corrupt=" + getCorruptCount() + (isHealthy() ? "" : ", stopped") + "}";
+    }
+
+    // ---- Dispatcher ----
+
+    private void dispatchLoop() {
+        try {
+            while (true) {
+                List<EmailMessage> batch = nextBatch();
+                if (batch == null || !retryIo("fsync", this::syncWrites)) {
+                    return;
+                }
+                for (EmailMessage message : batch) {
+                    rateLimits.acquire(BulkNotificationSender.EMAIL_PROVIDER_LIMIT,
+                            BulkNotificationSender.domainLimitName(message.getTo()));
+                }
+                List<Boolean> results = batch.isEmpty() ? List.of() : sendWithRetry(batch);
+                if (results == null || Thread.currentThread().isInterrupted()) {
+                    // Closed before the batch went through; it is sent again after the next open
+                    return;
+                }
+                for (Boolean sent : results) {
+                    if (sent) {
+                        delivered.increment();
+                    } else {
+                        rejected.increment();
+                    }
+                }
+                if (!retryIo("checkpoint", () -> checkpoint(readSeq))) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // close() gave up waiting
+        } catch (IOException | RuntimeException e) {
+            logger.error("Notification outbox dispatcher stopped; undelivered messages stay in {}", directory, e);
+            lock.lock();
+            try {
+                dispatcherFailure = e;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            closeQuietly(readChannel);
+        }
+    }
+
+    /**
+     * Waits until messages are available and reads up to a provider batch of them.
+     * The batch is short, possibly empty, if damaged records were skipped.
+     * Returns null once the outbox is closed.
+     */
+    private List<EmailMessage> nextBatch() throws IOException {
+        long available;
+        lock.lock();
+        try {
+            while (!closed && appendedSeq == readSeq) {
+                changed.awaitUninterruptibly();
+            }
+            if (closed) {
+                return null;
+            }
+            available = appendedSeq - readSeq;
+        } finally {
+            lock.unlock();
+        }
+        int count = (int) Math.min(available, NotificationService.MAX_BATCH_SIZE);
+        long end = readSeq + count;
+        List<EmailMessage> batch = new ArrayList<>(count);
+        while (readSeq < end) {
+            EmailMessage message = readNext();
+            if (message != null) {
+                batch.add(message);
+            }
+        }
+        return batch;
+    }
+
+    private List<Boolean> sendWithRetry(List<EmailMessage> batch) throws InterruptedException {
+        long delay = RETRY_BASE_DELAY_MILLIS;
+        while (true) {
+            try {
+                return guard.call(() -> notificationService.sendEmailBatch(batch));
+            } catch (RuntimeException e) {
+                retries.increment();
+                delay = nextDelayMillis(delay);
+                logger.warn("Sending {} outbox messages failed, retrying in {}ms: {}", batch.size(), delay, e.getMessage());
+                if (!awaitClose(delay)) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface IoAction {
+        void run() throws IOException;
+    }
+
+    /** Runs a disk operation until it succeeds; returns false if the outbox was closed first */
+    private boolean retryIo(String operation, IoAction action) throws InterruptedException {
+        long delay = RETRY_BASE_DELAY_MILLIS;
+        while (true) {
+            try {
+                action.run();
+                return true;
+            } catch (IOException e) {
+                retries.increment();
+                delay = nextDelayMillis(delay);
+                logger.warn("Outbox {} failed, retrying in {}ms: {}", operation, delay, e.getMessage());
+                if (!awaitClose(delay)) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    // Decorrelated jitter, as for other retries
+    private static long nextDelayMillis(long previousDelayMillis) {
+        return ThreadLocalRandom.current().nextLong(RETRY_BASE_DELAY_MILLIS,
+                Math.min(RETRY_MAX_DELAY_MILLIS, previousDelayMillis * 3) + 1);
+    }
+
+    /** Sleeps unless the outbox is closed first; returns false if it was closed */
+    private boolean awaitClose(long millis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(millis);
+        lock.lock();
+        try {
+            while (!closed && remaining > 0) {
+                remaining = changed.awaitNanos(remaining);
+            }
+            return !closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces everything enqueued so far to disk. Takes the lock only to see which
+     * channels to force, so enqueue does not wait for the disk.
+     */
+    private void syncWrites() throws IOException {
+        List<FileChannel> full;
+        FileChannel current;
+        lock.lock();
+        try {
+            full = new ArrayList<>(rolledOver);
+            current = writeChannel;
+        } finally {
+            lock.unlock();
+        }
+        for (FileChannel channel : full) {
+            if (channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+        if (!full.isEmpty()) {
+            lock.lock();
+            try {
+                rolledOver.removeAll(full);
+            } finally {
+                lock.unlock();
+            }
+        }
+        current.force(false);
+    }
+
+    /**
+     * Reads the record at readSeq, which is known to be complete (readSeq < appendedSeq).
+     * Returns null if it was damaged and skipped.
+     */
+    private EmailMessage readNext() throws IOException {
+        if (readPosition >= readChannel.size()) {
+            // The writer rolled over; the next segment starts at the next sequence number
+            openReadSegment(readSeq);
+        }
+        if (readPosition + HEADER_SIZE > readChannel.size()) {
+            skipDamagedSegment();
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(readChannel, header, readPosition);
+        int storedCrc = header.getInt(0);
+        int length = header.getInt(4);
+        if (length < 0 || length > MAX_PAYLOAD_SIZE || readPosition + HEADER_SIZE + length > readChannel.size()) {
+            skipDamagedSegment();
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(readChannel, payload, readPosition + HEADER_SIZE);
+        long seq = readSeq;
+        readPosition += HEADER_SIZE + length;
+        readSeq++;
+        if (storedCrc == checksum(length, payload.array())) {
+            try {
+                return decode(payload);
+            } catch (RuntimeException e) {
+                // Checksum fine but the payload makes no sense; treat it like a damaged record
+            }
+        }
+        quarantine(readSegmentBase);
+        corrupt.increment();
+        logger.error("Skipping damaged outbox record at seq {} in {}", seq, segmentPath(readSegmentBase));
+        return null;
+    }
+
+    /**
+     * The record at readSeq has an unusable length, so the records after it
+     * cannot be found; continues with the next segment.
+     * @throws IOException if this is the segment being written
+     */
+    private void skipDamagedSegment() throws IOException {
+        Long next = segmentBases().higher(readSegmentBase);
+        if (next == null) {
+            throw new IOException("Corrupt outbox record at seq " + readSeq + " in the segment being written");
+        }
+        quarantine(readSegmentBase);
+        corrupt.add(next - readSeq);
+        logger.error("Outbox segment {} is damaged at seq {}; skipping {} messages", segmentPath(readSegmentBase),
+                readSeq, next - readSeq);
+        readSeq = next;
+        openReadSegment(next);
+    }
+
+    private void openReadSegment(long base) throws IOException {
+        readChannel.close();
+        readSegmentBase = base;
+        readChannel = FileChannel.open(segmentPath(base), StandardOpenOption.READ);
+        readPosition = 0;
+    }
+
+    // Keeps a copy of a damaged segment, which is otherwise deleted once read past
+    private void quarantine(long base) throws IOException {
+        Path copy = directory.resolve(segmentPath(base).getFileName() + QUARANTINE_SUFFIX);
+        if (!Files.exists(copy)) {
+            Files.copy(segmentPath(base), copy);
+        }
+    }
+
+    private void checkpoint(long seq) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        buffer.putLong(seq);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, 8);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        Path tmp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, directory.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpointSeq = seq;
+
+        // Segments before the one being read are fully delivered
+        for (long base : segmentBases()) {
+            if (base >= readSegmentBase) {
+                break;
+            }
+            Files.deleteIfExists(segmentPath(base));
+        }
+    }
+
+    // ---- Recovery ----
+
+    private void recover() throws IOException {
+        long checkpoint = readCheckpoint();
+        TreeSet<Long> bases = segmentBases();
+        if (bases.isEmpty()) {
+            writeChannel = openSegment(checkpoint);
+            appendedSeq = checkpoint;
+        } else {
+            // Earlier segments were complete when the writer rolled over; only the last can be torn
+            long lastBase = bases.last();
+            FileChannel last = FileChannel.open(segmentPath(lastBase), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long[] scan = scan(last, Long.MAX_VALUE);
+            if (scan[1] < last.size()) {
+                logger.warn("Truncating torn tail of outbox segment {}", segmentPath(lastBase));
+                last.truncate(scan[1]);
+                last.force(true);
+            }
+            last.position(scan[1]);
+            writeChannel = last;
+            appendedSeq = lastBase + scan[0];
+        }
+        if (checkpoint > appendedSeq) {
+            throw new IOException("Outbox checkpoint " + checkpoint + " is past its last record " + appendedSeq);
+        }
+
+        // Start reading at the checkpoint, or at the oldest record if that segment is gone
+        Long base = bases.floor(checkpoint);
+        if (base == null) {
+            base = bases.isEmpty() ? checkpoint : bases.first();
+        }
+        readSegmentBase = base;
+        readChannel = FileChannel.open(segmentPath(base), StandardOpenOption.READ);
+        readSeq = Math.max(base, Math.min(checkpoint, appendedSeq));
+        readPosition = scan(readChannel, readSeq - base)[1];
+        checkpointSeq = readSeq;
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path path = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() == 12) {
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, 8);
+            if (buffer.getInt(8) == (int) crc.getValue()) {
+                return buffer.getLong(0);
+            }
+        }
+        // The file is replaced atomically, so this should not happen; resending is the safe choice
+        logger.warn("Outbox checkpoint {} is unreadable, resending from the oldest segment", path);
+        return 0;
+    }
+
+    /**
+     * Reads up to {@code maxRecords} valid records from the start of a segment.
+     * Returns {records read, offset just after the last of them}.
+     */
+    private static long[] scan(FileChannel channel, long maxRecords) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        long records = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (records < maxRecords && position + HEADER_SIZE <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            int storedCrc = header.getInt(0);
+            int length = header.getInt(4);
+            if (length < 0 || length > MAX_PAYLOAD_SIZE || position + HEADER_SIZE + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(channel, payload, position + HEADER_SIZE);
+            if (storedCrc != checksum(length, payload.array())) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+            records++;
+        }
+        return new long[]{records, position};
+    }
+
+    private TreeSet<Long> segmentBases() throws IOException {
+        TreeSet<Long> bases = new TreeSet<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> bases.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()))));
+        }
+        return bases;
+    }
+
+    private FileChannel openSegment(long base) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(base),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private Path segmentPath(long base) {
+        return directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+
+    // ---- Encoding ----
+
+    private static ByteBuffer encode(EmailMessage message) throws IOException {
+        byte[] to = message.getTo().getBytes(StandardCharsets.UTF_8);
+        byte[] subject = message.getSubject().getBytes(StandardCharsets.UTF_8);
+        byte[] body = message.getBody().getBytes(StandardCharsets.UTF_8);
+        int length = 12 + to.length + subject.length + body.length;
+        if (length > MAX_PAYLOAD_SIZE) {
+            throw new IOException("Message to " + message.getTo() + " is too large for the outbox");
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + length);
+        record.putInt(0).putInt(length);
+        record.putInt(to.length).put(to);
+        record.putInt(subject.length).put(subject);
+        record.putInt(body.length).put(body);
+        byte[] payload = new byte[length];
+        System.arraycopy(record.array(), HEADER_SIZE, payload, 0, length);
+        record.putInt(0, checksum(length, payload));
+        record.flip();
+        return record;
+    }
+
+    private static EmailMessage decode(ByteBuffer payload) {
+        payload.flip();
+        return new EmailMessage(readString(payload), readString(payload), readString(payload));
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(int length, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(4).putInt(0, length).array());
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of outbox segment");
+            }
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Could not close outbox segment", e);
+        }
+    }
+}
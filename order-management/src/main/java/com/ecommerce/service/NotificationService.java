@@ -1,6 +1,15 @@
 package com.ecommerce.service;
 
+import com.ecommerce.concurrent.Deadline;
+import com.ecommerce.concurrent.DeadlineExceededException;
+
+import java.util.ArrayList;
+import java.util.List;
+
 public class NotificationService {
+    /** Most messages the provider accepts in one batch call; larger batches are split */
+    public static final int MAX_BATCH_SIZE = 100;
+
     /**
      * Simulates sending email - takes 200ms
      */
@@ -14,6 +23,18 @@ public class NotificationService {
         }
     }
 
+    /**
+     * Email bounded by a deadline: skipped if less than 200ms is left,
+     * interrupted if the deadline passes
+     * @throws DeadlineExceededException in either case
+     */
+    public void sendEmail(String email, String subject, String body, Deadline deadline) {
+        deadline.call("Email to " + email, 200, () -> {
+            sendEmail(email, subject, body);
+            return null;
+        });
+    }
+
     /**
      * Simulates sending SMS - takes 150ms
      */
@@ -26,5 +47,71 @@ public class NotificationService {
             Thread.currentThread().interrupt();
         }
     }
-}
 
+    /**
+     * Batch email send - one 200ms round trip per MAX_BATCH_SIZE messages
+     * Returns one result per message, in message order. A message to an invalid
+     * address fails on its own; the rest of the batch is still sent.
+     */
+    public List<Boolean> sendEmailBatch(List<EmailMessage> messages) {
+        List<Boolean> results = new ArrayList<>(messages.size());
+        try {
+            for (int from = 0; from < messages.size(); from += MAX_BATCH_SIZE) {
+                List<EmailMessage> chunk = messages.subList(from, Math.min(messages.size(), from + MAX_BATCH_SIZE));
+                System.out.println("[Email] Sending batch of " + chunk.size() + " emails...");
+                Thread.sleep(200);
+                for (EmailMessage message : chunk) {
+                    results.add(isValidEmail(message.getTo()));
+                }
+                System.out.println("[Email] Batch of " + chunk.size() + " sent");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            while (results.size() < messages.size()) {
+                results.add(false);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Sends the same email to every recipient, MAX_BATCH_SIZE recipients per
+     * 200ms round trip. Returns one result per recipient, in recipient order.
+     */
+    public List<Boolean> sendEmailBatch(String subject, String body, List<String> recipients) {
+        List<EmailMessage> messages = new ArrayList<>(recipients.size());
+        for (String recipient : recipients) {
+            messages.add(new EmailMessage(recipient, subject, body));
+        }
+        return sendEmailBatch(messages);
+    }
+
+    /**
+     * Sends the same SMS to every phone, MAX_BATCH_SIZE phones per 150ms round
+     * trip. Returns one result per phone, in phone order.
+     */
+    public List<Boolean> sendSMSBatch(String message, List<String> phones) {
+        List<Boolean> results = new ArrayList<>(phones.size());
+        try {
+            for (int from = 0; from < phones.size(); from += MAX_BATCH_SIZE) {
+                List<String> chunk = phones.subList(from, Math.min(phones.size(), from + MAX_BATCH_SIZE));
+                System.out.println("[SMS] Sending batch of " + chunk.size() + " messages...");
+                Thread.sleep(150);
+                for (String phone : chunk) {
+                    results.add(phone != null && !phone.isBlank());
+                }
+                System.out.println("[SMS] Batch of " + chunk.size() + " sent");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            while (results.size() < phones.size()) {
+                results.add(false);
+            }
+        }
+        return results;
+    }
+
+    private static boolean isValidEmail(String email) {
+        return email != null && email.indexOf('@') > 0;
+    }
+}
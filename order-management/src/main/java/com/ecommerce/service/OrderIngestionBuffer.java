@@ -0,0 +1,213 @@
+package com.ecommerce.service;
+
+import com.ecommerce.concurrent.BoundedRingBuffer;
+import com.ecommerce.concurrent.NamedThreadFactory;
+import com.ecommerce.model.Customer;
+import com.ecommerce.model.Order;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Streaming front door for orders. Producers publish orders into a bounded ring
+ * buffer; worker threads drain it in batches and run each batch through
+ * {@link OrderProcessor#processOrderAsync}, waiting for a batch to finish before
+ * taking the next one. At most {@code capacity + workers * batchSize} orders are
+ * held at once, so memory stays flat under bursts.
+ *
+ * When the buffer is full, producers choose what happens: wait ({@link #submit}),
+ * wait up to a timeout, or be rejected at once ({@link #trySubmit}). Rejections
+ * throw {@link RejectedExecutionException} and are counted.
+ */
+public class OrderIngestionBuffer implements AutoCloseable {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final OrderProcessor processor;
+    private final BoundedRingBuffer<Submission> ring;
+    private final int batchSize;
+    private final List<Thread> workers = new ArrayList<>();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private volatile boolean closed;
+    // Producers past the closed check that have not finished publishing; workers outlast them
+    private final AtomicInteger publishing = new AtomicInteger();
+
+    /**
+     * @param capacity orders the buffer holds, rounded up to a power of two
+     * @param workerCount threads draining the buffer
+     * @param batchSize orders a worker takes per drain
+     */
+    public OrderIngestionBuffer(OrderProcessor processor, int capacity, int workerCount, int batchSize) {
+        if (workerCount < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("workerCount and batchSize must be positive");
+        }
+        this.processor = processor;
+        this.ring = new BoundedRingBuffer<>(capacity);
+        this.batchSize = batchSize;
+        ThreadFactory threads = new NamedThreadFactory("order-ingestion");
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = threads.newThread(this::drainLoop);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Publishes an order, waiting while the buffer is full.
+     * @return completes with the tracking number, or null if the order failed
+     */
+    public CompletableFuture<String> submit(Order order, Customer customer) throws InterruptedException {
+        Submission submission = open(order, customer);
+        try {
+            ring.put(submission);
+        } finally {
+            publishing.decrementAndGet();
+        }
+        accepted.increment();
+        return submission.result;
+    }
+
+    /**
+     * Publishes an order, waiting up to the timeout for room.
+     * @throws RejectedExecutionException if the buffer stayed full
+     */
+    public CompletableFuture<String> submit(Order order, Customer customer, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        Submission submission = open(order, customer);
+        try {
+            if (!ring.offer(submission, timeout, unit)) {
+                throw reject(order, "still full after " + unit.toMillis(timeout) + "ms");
+            }
+        } finally {
+            publishing.decrementAndGet();
+        }
+        accepted.increment();
+        return submission.result;
+    }
+
+    /**
+     * Publishes an order only if there is room right now.
+     * @throws RejectedExecutionException if the buffer is full
+     */
+    public CompletableFuture<String> trySubmit(Order order, Customer customer) {
+        Submission submission = open(order, customer);
+        try {
+            if (!ring.offer(submission)) {
+                throw reject(order, "full");
+            }
+        } finally {
+            publishing.decrementAndGet();
+        }
+        accepted.increment();
+        return submission.result;
+    }
+
+    /** Orders waiting in the buffer (not yet taken by a worker) */
+    public int getBacklog() {
+        return ring.size();
+    }
+
+    public int getCapacity() {
+        return ring.capacity();
+    }
+
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getProcessedCount() {
+        return processed.sum();
+    }
+
+    /**
+     * Stops accepting orders, lets the workers finish everything already
+     * published, then waits for them to exit. Producers that got past the
+     * closed check, including ones waiting for room, still publish, and the
+     * workers stay until their orders are processed too.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    // Registers the caller as publishing before checking closed; the caller must deregister
+    private Submission open(Order order, Customer customer) {
+        publishing.incrementAndGet();
+        if (closed) {
+            publishing.decrementAndGet();
+            throw reject(order, "closed");
+        }
+        return new Submission(order, customer);
+    }
+
+    private RejectedExecutionException reject(Order order, String reason) {
+        rejected.increment();
+        return new RejectedExecutionException("Order " + order.getId() + " rejected: ingestion buffer " + reason);
+    }
+
+    private void drainLoop() {
+        List<Submission> batch = new ArrayList<>(batchSize);
+        while (true) {
+            batch.clear();
+            if (ring.drainTo(batch, batchSize) == 0) {
+                // Once no producer is publishing, an empty ring stays empty
+                if (closed && publishing.get() == 0 && ring.isEmpty()) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            process(batch);
+        }
+    }
+
+    private void process(List<Submission> batch) {
+        CompletableFuture<?>[] inFlight = new CompletableFuture<?>[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            Submission submission = batch.get(i);
+            CompletableFuture<String> result;
+            try {
+                result = processor.processOrderAsync(submission.order, submission.customer);
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            inFlight[i] = result.whenComplete((trackingNumber, error) -> {
+                processed.increment();
+                if (error != null) {
+                    submission.result.completeExceptionally(error);
+                } else {
+                    submission.result.complete(trackingNumber);
+                }
+            });
+        }
+        // Finish this batch before taking more, so in-flight work stays bounded
+        try {
+            CompletableFuture.allOf(inFlight).join();
+        } catch (CompletionException | CancellationException e) {
+            // Already reported through each submission's future
+        }
+    }
+
+    private static final class Submission {
+        final Order order;
+        final Customer customer;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+
+        Submission(Order order, Customer customer) {
+            this.order = order;
+            this.customer = customer;
+        }
+    }
+}
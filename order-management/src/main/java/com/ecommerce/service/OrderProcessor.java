@@ -1,23 +1,178 @@
 package com.ecommerce.service;
 
+import com.ecommerce.concurrent.AsyncStage;
+import com.ecommerce.concurrent.CallNotPermittedException;
+import com.ecommerce.concurrent.CoalescingCache;
+import com.ecommerce.concurrent.DependencyGuards;
+import com.ecommerce.concurrent.ExecutorRuntime;
+import com.ecommerce.concurrent.ExecutorRuntime.Dependency;
+import com.ecommerce.concurrent.HedgedCaller;
+import com.ecommerce.concurrent.MicroBatcher;
 import com.ecommerce.external.*;
 import com.ecommerce.model.*;
+import com.ecommerce.store.OrderEventLog;
+import com.ecommerce.store.OrderEventLog.EventType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.*;
 
-public class OrderProcessor {
+/**
+ * Processes orders against the external services. Confirmations are sent in
+ * the background on daemon threads; {@link #close()} waits for the ones still
+ * in flight, so call it before the application exits. Each processOrder
+ * method first claims the order ({@link Order#claim()}) and returns null for
+ * one that is not pending or is already being processed.
+ */
+public class OrderProcessor implements AutoCloseable {
+    private static final long CLOSE_GRACE_SECONDS = 5;
+
+
     private PaymentGateway paymentGateway = new PaymentGateway();
-    private InventorySystem inventorySystem = new InventorySystem();
+    private final InventorySystem inventorySystem;
     private ShippingProvider shippingProvider = new ShippingProvider();
     private NotificationService notificationService = new NotificationService();
+    private final OrderEventLog eventLog;
+    private final NotificationOutbox outbox;
+    private final ExecutorRuntime runtime;
+    private final DependencyGuards guards;
+    private final MicroBatcher<Long, Boolean> availabilityBatcher;
+    private final MicroBatcher<PaymentRequest, Boolean> paymentBatcher;
+    private final MicroBatcher<EmailMessage, Boolean> confirmationBatcher;
+    private final CoalescingCache<String, Double> shippingQuotes;
+    // Confirmations handed to the notify stage and not yet sent
+    private final Set<CompletableFuture<?>> pendingConfirmations = ConcurrentHashMap.newKeySet();
+    // Availability checks and quotes are idempotent reads, so slow ones are hedged
+    private final HedgedCaller availabilityHedger;
+    private final HedgedCaller quoteHedger;
+
+    // Stages of the asynchronous pipeline behind processOrderAsync
+    private final AsyncStage<Long, Boolean> availabilityStage;
+    private final AsyncStage<PaymentRequest, Boolean> paymentStage;
+    private final AsyncStage<String, Double> quoteStage;
+    private final AsyncStage<Order, Boolean> reserveStage;
+    private final AsyncStage<Long, String> pickupStage;
+    private final AsyncStage<EmailMessage, Boolean> notifyStage;
+
+    public OrderProcessor() {
+        this(new InventorySystem(), null);
+    }
+
+    public OrderProcessor(InventorySystem inventorySystem) {
+        this(inventorySystem, null);
+    }
+
+    public OrderProcessor(InventorySystem inventorySystem, OrderEventLog eventLog) {
+        this(inventorySystem, eventLog, ExecutorRuntime.shared());
+    }
+
+    /**
+     * @param inventorySystem inventory whose stock ledger orders reserve against
+     * @param eventLog write-ahead log that lifecycle events are recorded to, or null to skip logging
+     * @param runtime bulkheaded executors that run the external calls
+     */
+    public OrderProcessor(InventorySystem inventorySystem, OrderEventLog eventLog, ExecutorRuntime runtime) {
+        this(inventorySystem, eventLog, runtime, DependencyGuards.shared());
+    }
+
+    /**
+     * @param inventorySystem inventory whose stock ledger orders reserve against
+     * @param eventLog write-ahead log that lifecycle events are recorded to, or null to skip logging
+     * @param runtime bulkheaded executors that run the external calls
+     * @param guards circuit breakers and concurrency limits around each external service
+     */
+    public OrderProcessor(InventorySystem inventorySystem, OrderEventLog eventLog, ExecutorRuntime runtime,
+                          DependencyGuards guards) {
+        this(inventorySystem, eventLog, runtime, guards, null);
+    }
+
+    /**
+     * @param inventorySystem inventory whose stock ledger orders reserve against
+     * @param eventLog write-ahead log that lifecycle events are recorded to, or null to skip logging
+     * @param runtime bulkheaded executors that run the external calls
+     * @param guards circuit breakers and concurrency limits around each external service
+     * @param outbox durable outbox that confirmation emails are written to, or null to send them
+     *               through the notify stage
+     */
+    public OrderProcessor(InventorySystem inventorySystem, OrderEventLog eventLog, ExecutorRuntime runtime,
+                          DependencyGuards guards, NotificationOutbox outbox) {
+        this.inventorySystem = inventorySystem;
+        this.eventLog = eventLog;
+        this.outbox = outbox;
+        this.runtime = runtime;
+        this.guards = guards;
+        // Both attempts of a hedged read run in the dependency's bulkhead and count against its limit
+        this.availabilityHedger = new HedgedCaller("inventory-availability", 0.95, 350, 0.05,
+                runtime.bulkhead(Dependency.INVENTORY));
+        this.quoteHedger = new HedgedCaller("shipping-quote", 0.95, 450, 0.05,
+                runtime.bulkhead(Dependency.SHIPPING));
+        // Concurrent availability checks within a few ms share one inventory round trip
+        this.availabilityBatcher = MicroBatcher.async("inventory-availability", 100, 5,
+                orderIds -> availabilityHedger.callAsync(() -> guarded(Dependency.INVENTORY,
+                        () -> inventorySystem.checkAvailability(orderIds)))
+                    .thenApply(available -> {
+                        List<Boolean> results = new ArrayList<>(orderIds.size());
+                        for (Long orderId : orderIds) {
+                            results.add(Boolean.TRUE.equals(available.get(orderId)));
+                        }
+                        return results;
+                    }));
+        // Concurrent payments within 10ms (up to 50) are authorized in one gateway call
+        this.paymentBatcher = new MicroBatcher<>("payment-authorization", 50, 10,
+                requests -> guarded(Dependency.PAYMENT, () -> paymentGateway.processPayments(requests)),
+                runtime.bulkhead(Dependency.PAYMENT));
+        // Confirmations within 20ms (up to a provider batch) go out in one send
+        this.confirmationBatcher = new MicroBatcher<>("order-confirmation", NotificationService.MAX_BATCH_SIZE, 20,
+                messages -> guarded(Dependency.NOTIFICATION, () -> notificationService.sendEmailBatch(messages)),
+                runtime.bulkhead(Dependency.NOTIFICATION));
+        // Quotes depend only on the destination: cache them per city for 5 minutes
+        this.shippingQuotes = CoalescingCache.async(1_000, TimeUnit.MINUTES.toMillis(5),
+                city -> quoteHedger.callAsync(() -> guarded(Dependency.SHIPPING,
+                        () -> shippingProvider.getShippingQuote(city))));
+
+        // Batched stages admit many orders per batch; blocking stages stay within their bulkhead's threads.
+        // Quotes are cached per city, so few loads run at once and pickup gets most of the shipping threads.
+        this.availabilityStage = new AsyncStage<>("availability", 1_000, availabilityBatcher::submit);
+        this.paymentStage = new AsyncStage<>("payment", 1_000, paymentBatcher::submit);
+        this.quoteStage = new AsyncStage<>("quote", 4, shippingQuotes::getAsync);
+        this.reserveStage = AsyncStage.blocking("reserve", 20, runtime.bulkhead(Dependency.INVENTORY),
+                inventorySystem::reserveInventory);
+        this.pickupStage = AsyncStage.blocking("pickup", 16, runtime.bulkhead(Dependency.SHIPPING),
+                orderId -> guarded(Dependency.SHIPPING, () -> shippingProvider.schedulePickup(orderId)));
+        this.notifyStage = new AsyncStage<>("notify", 1_000, confirmationBatcher::submit);
+    }
+
+    /**
+     * Stages of the asynchronous order pipeline in execution order; their limiters
+     * can be inspected and re-tuned at runtime.
+     */
+    public List<AsyncStage<?, ?>> getPipelineStages() {
+        return List.of(availabilityStage, paymentStage, quoteStage, reserveStage, pickupStage, notifyStage);
+    }
+
+    /**
+     * Hit/miss/eviction counters of the per-city shipping quote cache.
+     */
+    public CoalescingCache.Stats getShippingQuoteStats() {
+        return shippingQuotes.stats();
+    }
+
+    /**
+     * Hedging counters of the availability and shipping quote reads.
+     */
+    public List<HedgedCaller> getHedgers() {
+        return List.of(availabilityHedger, quoteHedger);
+    }
 
     /**
      * TASK A: Process order SEQUENTIALLY
      *
      * Steps (must all succeed):
      * 1. Check inventory availability
-     * 2. Process payment
-     * 3. Reserve inventory
+     * 2. Reserve inventory
+     * 3. Process payment
      * 4. Get shipping quote
      * 5. Schedule pickup
      * 6. Send confirmation email
@@ -26,41 +181,92 @@ public class OrderProcessor {
      * Return tracking number if successful, null if failed.
      */
     public String processOrderSequential(Order order, Customer customer) {
+        if (!claim(order)) {
+            return null;
+        }
         long startTime = System.currentTimeMillis();
         
-        // Step 1: Check inventory availability
-        if (!inventorySystem.checkAvailability(order.getId())) {
+        try {
+            String trackingNumber = shipSequential(order, customer);
+            if (trackingNumber == null) {
+                return null;
+            }
+            
+            // Step 6: Send confirmation email; the order has shipped, so a failed send is only logged
+            try {
+                guarded(Dependency.NOTIFICATION, () -> {
+                    notificationService.sendEmail(
+                        customer.getEmail(),
+                        "Order Confirmation #" + order.getId(),
+                        "Your order has been confirmed. Tracking: " + trackingNumber
+                    );
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                System.out.println("Confirmation for order " + order.getId() + " skipped: " + e.getMessage());
+            }
+            
+            return trackingNumber;
+        } finally {
             long endTime = System.currentTimeMillis();
             System.out.println("Sequential processing took: " + (endTime - startTime) + "ms");
-            return null;
         }
+    }
+
+    // Steps 1-5 of the sequential flow; undoes what was done and returns null if any of them fails
+    private String shipSequential(Order order, Customer customer) {
+        boolean reserved = false;
+        boolean paid = false;
+        String trackingNumber = null;
         
-        // Step 2: Process payment
-        if (!paymentGateway.processPayment(order.getId(), order.getTotalAmount())) {
-            long endTime = System.currentTimeMillis();
-            System.out.println("Sequential processing took: " + (endTime - startTime) + "ms");
+        try {
+            // Step 1: Check inventory availability
+            if (!availabilityHedger.call(() -> guarded(Dependency.INVENTORY,
+                    () -> inventorySystem.checkAvailability(order.getId())))) {
+                cancel(order, false, false);
+                return null;
+            }
+            
+            // Step 2: Reserve inventory before charging, so a paid order never finds its stock gone
+            reserved = inventorySystem.reserveInventory(order);
+            if (!reserved) {
+                cancel(order, false, false);
+                return null;
+            }
+            advance(order, EventType.INVENTORY_RESERVED);
+            
+            // Step 3: Process payment
+            paid = guarded(Dependency.PAYMENT, () -> paymentGateway.processPayment(order.getId(), order.getTotalAmount()));
+            if (!paid) {
+                cancel(order, true, false);
+                return null;
+            }
+            advance(order, EventType.PAID);
+            
+            // Step 4: Get shipping quote
+            double shippingCost = shippingQuotes.get(customer.getCity());
+            
+            // Step 5: Schedule pickup
+            trackingNumber = guarded(Dependency.SHIPPING, () -> shippingProvider.schedulePickup(order.getId()));
+            if (trackingNumber == null) {
+                throw new IllegalStateException("Pickup could not be scheduled");
+            }
+            inventorySystem.commitInventory(order);
+            reserved = false;
+            paid = false;
+            advance(order, EventType.SHIPPED);
+            return trackingNumber;
+            
+        } catch (RuntimeException e) {
+            // A dependency is failing, overloaded or unreachable: give up on the order instead of waiting on it
+            System.out.println("Order " + order.getId() + " failed: " + e.getMessage());
+            if (order.getStatus() == OrderStatus.SHIPPED) {
+                // Only recording the shipment failed; the parcel is on its way and must not be undone
+                return trackingNumber;
+            }
+            cancel(order, reserved, paid);
             return null;
         }
-        
-        // Step 3: Reserve inventory
-        inventorySystem.reserveInventory(order.getId());
-        
-        // Step 4: Get shipping quote
-        double shippingCost = shippingProvider.getShippingQuote(order.getId(), customer.getCity());
-        
-        // Step 5: Schedule pickup
-        String trackingNumber = shippingProvider.schedulePickup(order.getId());
-        
-        // Step 6: Send confirmation email
-        notificationService.sendEmail(
-            customer.getEmail(),
-            "Order Confirmation #" + order.getId(),
-            "Your order has been confirmed. Tracking: " + trackingNumber
-        );
-        
-        long endTime = System.currentTimeMillis();
-        System.out.println("Sequential processing took: " + (endTime - startTime) + "ms");
-        return trackingNumber;
     }
 
     /**
@@ -76,53 +282,63 @@ public class OrderProcessor {
      * Measure and print total time taken.
      */
     public String processOrderConcurrent(Order order, Customer customer) {
+        return processOrderConcurrent(order, customer, availabilityBatcher.submit(order.getId()));
+    }
+
+    private String processOrderConcurrent(Order order, Customer customer, Future<Boolean> inventoryFuture) {
+        if (!claim(order)) {
+            return null;
+        }
         long startTime = System.currentTimeMillis();
-        ExecutorService executor = Executors.newFixedThreadPool(3);
+        boolean reserved = false;
+        boolean paid = false;
         
         try {
-            // Run inventory check, payment, and shipping quote in parallel
-            Future<Boolean> inventoryFuture = executor.submit(() -> 
-                inventorySystem.checkAvailability(order.getId())
-            );
+            // Hold the stock before anything is charged; reserving is a local ledger update
+            reserved = inventorySystem.reserveInventory(order);
+            if (!reserved) {
+                cancel(order, false, false);
+                return null;
+            }
             
-            Future<Boolean> paymentFuture = executor.submit(() -> 
-                paymentGateway.processPayment(order.getId(), order.getTotalAmount())
-            );
+            // Run inventory check and payment (both batched with other orders) and shipping quote in parallel
+            Future<Boolean> paymentFuture = paymentBatcher.submit(PaymentRequest.forOrder(order));
             
-            Future<Double> shippingQuoteFuture = executor.submit(() -> 
-                shippingProvider.getShippingQuote(order.getId(), customer.getCity())
-            );
+            Future<Double> shippingQuoteFuture = shippingQuotes.getAsync(customer.getCity());
             
-            // Wait for all three to complete
+            // Wait for all three to complete; payment first, so a later failure knows whether to refund
+            paid = paymentFuture.get();
             boolean inventoryAvailable = inventoryFuture.get();
-            boolean paymentSuccess = paymentFuture.get();
             double shippingCost = shippingQuoteFuture.get();
             
             // If either inventory or payment failed, abort
-            if (!inventoryAvailable || !paymentSuccess) {
+            if (!inventoryAvailable || !paid) {
+                cancel(order, reserved, paid);
                 return null;
             }
+            advance(order, EventType.INVENTORY_RESERVED);
+            advance(order, EventType.PAID);
             
             // Now do dependent operations sequentially
-            inventorySystem.reserveInventory(order.getId());
-            String trackingNumber = shippingProvider.schedulePickup(order.getId());
+            String trackingNumber = guarded(Dependency.SHIPPING, () -> shippingProvider.schedulePickup(order.getId()));
+            if (trackingNumber == null) {
+                throw new IllegalStateException("Pickup could not be scheduled");
+            }
+            inventorySystem.commitInventory(order);
+            reserved = false;
+            paid = false;
+            advance(order, EventType.SHIPPED);
             
             // Send email asynchronously (fire and forget)
-            executor.submit(() -> 
-                notificationService.sendEmail(
-                    customer.getEmail(),
-                    "Order Confirmation #" + order.getId(),
-                    "Your order has been confirmed. Tracking: " + trackingNumber
-                )
-            );
+            sendConfirmationAsync(order, customer, trackingNumber);
             
             return trackingNumber;
             
         } catch (Exception e) {
             e.printStackTrace();
+            cancel(order, reserved, paid);
             return null;
         } finally {
-            executor.shutdown();
             long endTime = System.currentTimeMillis();
             System.out.println("Concurrent processing took: " + (endTime - startTime) + "ms");
         }
@@ -135,24 +351,43 @@ public class OrderProcessor {
      * Use a thread pool to limit concurrent processing.
      *
      * Return a Map of orderId -> trackingNumber (null if failed)
+     *
+     * If the orchestration bulkhead is full, the calling thread processes the
+     * next order itself until capacity frees up.
      */
     public Map<Long, String> processMultipleOrders(List<Order> orders,
                                                     Map<Long, Customer> customerMap) {
-        ExecutorService executor = Executors.newFixedThreadPool(5);
-        Map<Long, String> results = new ConcurrentHashMap<>();
+        // Failed orders map to null, which ConcurrentHashMap cannot hold
+        Map<Long, String> results = Collections.synchronizedMap(new HashMap<>());
         
         List<Future<?>> futures = new ArrayList<>();
         
+        // Queue every availability check up front so they go out in a few batched round trips
+        Map<Long, CompletableFuture<Boolean>> availability = new HashMap<>();
+        for (Order order : orders) {
+            availability.put(order.getId(), availabilityBatcher.submit(order.getId()));
+        }
+        
         // Submit all orders for processing
         for (Order order : orders) {
-            Future<?> future = executor.submit(() -> {
+            Callable<Void> task = () -> {
                 Customer customer = customerMap.get(order.getCustomerId());
                 if (customer != null) {
-                    String tracking = processOrderConcurrent(order, customer);
+                    String tracking = processOrderConcurrent(order, customer, availability.get(order.getId()));
                     results.put(order.getId(), tracking);
                 }
-            });
-            futures.add(future);
+                return null;
+            };
+            try {
+                futures.add(runtime.submit(Dependency.ORCHESTRATION, task));
+            } catch (RejectedExecutionException e) {
+                // Orchestration is saturated: process the order on this thread, which also slows submission down
+                try {
+                    task.call();
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            }
         }
         
         // Wait for all to complete
@@ -164,7 +399,6 @@ public class OrderProcessor {
             }
         }
         
-        executor.shutdown();
         return results;
     }
 
@@ -176,50 +410,229 @@ public class OrderProcessor {
      * - Chain operations with thenApply, thenCompose
      * - Combine results with thenCombine, allOf
      * - Handle errors with exceptionally
+     *
+     * Built as a staged pipeline: each step (availability, payment, quote, reserve,
+     * pickup, notify) runs on its own executor behind a concurrency limit, and
+     * orders waiting for a stage hold no thread. Decisions between steps, which
+     * write the event log and may refund, run on orchestration threads rather
+     * than on the threads that completed a step. Whatever step fails once the
+     * stock is reserved, the order is cancelled and a taken payment refunded.
      */
     public CompletableFuture<String> processOrderAsync(Order order, Customer customer) {
-        // Run inventory check and payment in parallel
-        CompletableFuture<Boolean> inventoryCheck = CompletableFuture.supplyAsync(() -> 
-            inventorySystem.checkAvailability(order.getId())
-        );
-        
-        CompletableFuture<Boolean> paymentResult = CompletableFuture.supplyAsync(() -> 
-            paymentGateway.processPayment(order.getId(), order.getTotalAmount())
-        );
+        if (!claim(order)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Executor orchestration = runtime.bulkhead(Dependency.ORCHESTRATION);
+        // What the order holds, recorded as soon as a step completes, so whichever handler
+        // gives up (or never gets to run) can give it back, and only once
+        AtomicBoolean reserved = new AtomicBoolean();
+        AtomicBoolean paid = new AtomicBoolean();
+        // Inventory check and shipping quote start right away, alongside the reservation
+        CompletableFuture<Boolean> inventoryCheck = availabilityStage.apply(order.getId());
         
-        CompletableFuture<Double> shippingQuote = CompletableFuture.supplyAsync(() -> 
-            shippingProvider.getShippingQuote(order.getId(), customer.getCity())
-        );
+        CompletableFuture<Double> shippingQuote = quoteStage.apply(customer.getCity());
         
-        // Combine inventory and payment results
-        return inventoryCheck
-            .thenCombine(paymentResult, (inv, pay) -> inv && pay)
-            .thenCompose(success -> {
-                if (!success) {
-                    return CompletableFuture.completedFuture(null);
+        // Reserve inventory before charging, so a paid order never finds its stock gone
+        return reserveStage.apply(order)
+            .whenComplete((done, ex) -> reserved.set(Boolean.TRUE.equals(done)))
+            .handleAsync((done, ex) -> {
+                if (ex != null || !done) {
+                    if (ex != null) {
+                        System.out.println("Order " + order.getId() + " not reserved: " + ex.getMessage());
+                    }
+                    cancel(order, reserved, paid);
+                    return false;
+                }
+                return true;
+            }, orchestration)
+            .thenCompose(done -> {
+                if (!done) {
+                    return CompletableFuture.<String>completedFuture(null);
                 }
                 
-                // Reserve inventory
-                inventorySystem.reserveInventory(order.getId());
-                
-                // Schedule pickup
-                String trackingNumber = shippingProvider.schedulePickup(order.getId());
-                
-                // Send email asynchronously
-                CompletableFuture.runAsync(() -> 
-                    notificationService.sendEmail(
-                        customer.getEmail(),
-                        "Order Confirmation #" + order.getId(),
-                        "Your order has been confirmed. Tracking: " + trackingNumber
-                    )
-                );
-                
-                return CompletableFuture.completedFuture(trackingNumber);
+                // Payment is batched with other orders; wait for it, the inventory check and the quote,
+                // whatever their outcome, so that a failure after the charge still refunds it
+                CompletableFuture<Boolean> paymentResult = paymentStage.apply(PaymentRequest.forOrder(order))
+                    .whenComplete((charged, ex) -> paid.set(Boolean.TRUE.equals(charged)));
+                return CompletableFuture.allOf(inventoryCheck, paymentResult, shippingQuote)
+                    .handleAsync((ignored, ex) -> {
+                        if (ex != null || !succeeded(inventoryCheck) || !paid.get()) {
+                            if (ex != null) {
+                                System.out.println("Order " + order.getId() + " failed: " + ex.getMessage());
+                            }
+                            cancel(order, reserved, paid);
+                            return false;
+                        }
+                        advance(order, EventType.INVENTORY_RESERVED);
+                        advance(order, EventType.PAID);
+                        return true;
+                    }, orchestration)
+                    .thenCompose(success -> {
+                        if (!success) {
+                            return CompletableFuture.<String>completedFuture(null);
+                        }
+                        
+                        // Schedule pickup; give the stock and the payment back if that fails
+                        return pickupStage.apply(order.getId())
+                            .handleAsync((trackingNumber, ex) -> {
+                                if (ex != null || trackingNumber == null) {
+                                    cancel(order, reserved, paid);
+                                    return null;
+                                }
+                                inventorySystem.commitInventory(order);
+                                reserved.set(false);
+                                paid.set(false);
+                                advance(order, EventType.SHIPPED);
+                                
+                                // Send email asynchronously
+                                sendConfirmationAsync(order, customer, trackingNumber);
+                                return trackingNumber;
+                            }, orchestration);
+                    });
             })
-            .exceptionally(ex -> {
-                ex.printStackTrace();
+            .handle((trackingNumber, ex) -> {
+                if (ex == null) {
+                    return trackingNumber;
+                }
+                // A handler threw, or the orchestration bulkhead refused to run one:
+                // whatever the order still holds is given back here
+                System.out.println("Order " + order.getId() + " failed: " + ex.getMessage());
+                cancel(order, reserved, paid);
                 return null;
             });
     }
-}
 
+    private static boolean succeeded(CompletableFuture<Boolean> step) {
+        return !step.isCompletedExceptionally() && step.join();
+    }
+
+    /**
+     * Writes the confirmation email to the outbox, which delivers it in the
+     * background. Without an outbox, or if writing to it fails, the email is
+     * queued on the notify stage instead, which coalesces confirmations into
+     * batch sends. The order has already shipped, so a failed send is only logged.
+     */
+    private void sendConfirmationAsync(Order order, Customer customer, String trackingNumber) {
+        EmailMessage confirmation = new EmailMessage(
+                customer.getEmail(),
+                "Order Confirmation #" + order.getId(),
+                "Your order has been confirmed. Tracking: " + trackingNumber);
+        if (outbox != null) {
+            try {
+                outbox.enqueue(confirmation);
+                return;
+            } catch (IOException e) {
+                System.out.println("Confirmation for order " + order.getId() + " not written to outbox: "
+                        + e.getMessage() + "; sending directly");
+            }
+        }
+        CompletableFuture<Boolean> sending = notifyStage.apply(confirmation)
+            .whenComplete((sent, ex) -> {
+                if (ex != null) {
+                    System.out.println("Confirmation for order " + order.getId() + " failed: " + ex.getMessage());
+                } else if (!sent) {
+                    System.out.println("Confirmation for order " + order.getId() + " rejected for " + customer.getEmail());
+                }
+            });
+        pendingConfirmations.add(sending);
+        sending.whenComplete((sent, ex) -> pendingConfirmations.remove(sending));
+    }
+
+    /**
+     * Waits up to a few seconds for confirmations still being sent, then flushes
+     * and stops the batchers and their timers, and the hedgers. Runtime threads are daemons, so confirmations
+     * still in flight when the JVM exits would otherwise be lost. Orders must
+     * not be submitted after this.
+     */
+    @Override
+    public void close() {
+        CompletableFuture<?>[] pending = pendingConfirmations.toArray(new CompletableFuture<?>[0]);
+        try {
+            CompletableFuture.allOf(pending).get(CLOSE_GRACE_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Already logged by the confirmation that failed
+        } catch (TimeoutException e) {
+            System.out.println(pendingConfirmations.size() + " confirmations still pending at close");
+        }
+        availabilityBatcher.close();
+        paymentBatcher.close();
+        confirmationBatcher.close();
+        availabilityHedger.close();
+        quoteHedger.close();
+    }
+
+    /**
+     * Takes the order before anything is reserved or charged, so the same order
+     * submitted twice, or one that is no longer pending, is never processed again.
+     * The order is logged as CREATED in its pending status; if that fails, it is
+     * left unprocessed.
+     */
+    private boolean claim(Order order) {
+        if (!order.claim()) {
+            System.out.println("Order " + order.getId() + " skipped: already claimed or " + order.getStatus());
+            return false;
+        }
+        if (eventLog != null) {
+            // Replay starts from here; without this record it could not tell where the order began
+            try {
+                eventLog.appendCreated(order.getId(), OrderStatus.PENDING);
+            } catch (IOException e) {
+                System.out.println("Order " + order.getId() + " not processed: " + e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cancels an order and gives back what it holds: its stock reservation and,
+     * if it was charged, the payment. The refund bypasses the payment guard,
+     * since the money is owed whether or not the gateway is healthy; a refund
+     * that does not go through is only logged.
+     */
+    private void cancel(Order order, boolean reserved, boolean paid) {
+        if (reserved) {
+            inventorySystem.releaseInventory(order);
+        }
+        if (paid && !paymentGateway.refundPayment(order.getId(), order.getTotalAmount())) {
+            System.out.println("Refund for order " + order.getId() + " failed; payment must be reversed manually");
+        }
+        advance(order, EventType.CANCELLED);
+    }
+
+    // Cancels an order whose holdings are tracked across asynchronous steps, clearing them first
+    private void cancel(Order order, AtomicBoolean reserved, AtomicBoolean paid) {
+        cancel(order, reserved.getAndSet(false), paid.getAndSet(false));
+    }
+
+    /**
+     * Calls an external service through its circuit breaker and concurrency limit.
+     * @throws CallNotPermittedException if the guard refuses the call
+     */
+    private <T> T guarded(Dependency dependency, Callable<T> call) {
+        return guards.guard(dependency).call(call);
+    }
+
+    /**
+     * Applies the status transition of a lifecycle event, then durably records
+     * the event (PAID carries the amount in cents). A transition another
+     * processor has already made, or one the state machine forbids, is skipped
+     * and not logged, so the log only holds transitions that took effect.
+     */
+    private void advance(Order order, EventType type) {
+        OrderStatus next = type.getResultingStatus();
+        if (next != null && !order.transitionTo(next)) {
+            return;
+        }
+        if (eventLog != null) {
+            long value = type == EventType.PAID ? order.getTotalCents() : 0L;
+            try {
+                eventLog.append(type, order.getId(), value);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to log " + type + " for order " + order.getId(), e);
+            }
+        }
+    }
+}
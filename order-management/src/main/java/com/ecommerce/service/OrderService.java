@@ -1,63 +1,156 @@
 package com.ecommerce.service;
 
+import com.ecommerce.model.Money;
 import com.ecommerce.model.Order;
 import com.ecommerce.model.OrderItem;
+import com.ecommerce.model.OrderStatus;
+import com.ecommerce.store.ColumnarOrderStore;
+import com.ecommerce.store.IndexedOrderStore;
+import com.ecommerce.store.MappedOrderStore;
+import com.ecommerce.store.OrderEventLog;
+import com.ecommerce.store.OrderStatusCounters;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class OrderService {
-    private List<Order> orders;
+    private final IndexedOrderStore store = new IndexedOrderStore();
+    private final ColumnarOrderStore columns = new ColumnarOrderStore();
+    private final OrderStatusCounters statusCounters = new OrderStatusCounters();
+    private final Collection<Order> orders = store.all();
+    private final MappedOrderStore persistentStore;
+    private final OrderEventLog eventLog;
+    // False until the orders of the persistent store have been materialized
+    private volatile boolean loaded;
 
+    // Orders keep the order of the list; an order whose id was already added is skipped
     public OrderService(List<Order> orders) {
-        this.orders = orders;
+        this(orders, null);
+    }
+
+    /**
+     * Also records every added order, with the status it starts in, as a
+     * CREATED event, so that replaying the log restores its status correctly.
+     */
+    public OrderService(List<Order> orders, OrderEventLog eventLog) {
+        this.persistentStore = null;
+        this.eventLog = eventLog;
+        this.loaded = true;
+        orders.forEach(this::addOrder);
+    }
+
+    /**
+     * Runs on top of a file-backed store: new orders and status changes are
+     * written through. Totals and status counts are read straight from the
+     * mapped file; orders already in the file are only materialized once a
+     * query needs the order objects.
+     */
+    public OrderService(MappedOrderStore persistentStore) {
+        this.persistentStore = persistentStore;
+        this.eventLog = null;
+    }
+
+    // 0. Add an order (indexes are maintained incrementally)
+    public boolean addOrder(Order order) {
+        ensureLoaded();
+        if (!index(order)) {
+            return false;
+        }
+        if (persistentStore != null) {
+            try {
+                persistentStore.append(order);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to persist order " + order.getId(), e);
+            }
+            order.addStatusListener(persistentStore);
+        }
+        if (eventLog != null) {
+            try {
+                eventLog.appendCreated(order.getId(), order.getStatus());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to log order " + order.getId(), e);
+            }
+        }
+        return true;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            for (int row = 0; row < persistentStore.size(); row++) {
+                Order order = persistentStore.read(row);
+                if (index(order)) {
+                    order.addStatusListener(persistentStore);
+                }
+            }
+            loaded = true;
+        }
+    }
+
+    private boolean index(Order order) {
+        if (!store.add(order)) {
+            return false;
+        }
+        columns.append(order);
+        order.addStatusListener(columns);
+        statusCounters.add(order.getStatus());
+        order.addStatusListener(statusCounters);
+        return true;
     }
 
     // 1. Get all orders for a specific customer
     public List<Order> getOrdersByCustomer(Long customerId) {
-        return orders.stream()
-                .filter(o -> Objects.equals(o.getCustomerId(), customerId))
-                .collect(Collectors.toList());
+        ensureLoaded();
+        return store.findByCustomer(customerId);
     }
 
-    // 2. Get orders placed in the last N days
+    // 2. Get orders placed in the last N days, oldest first
     public List<Order> getRecentOrders(int days) {
+        ensureLoaded();
         LocalDateTime cutoff = LocalDateTime.now().minusDays(days);
-        return orders.stream()
-                .filter(o -> !o.getOrderDate().isBefore(cutoff))
-                .collect(Collectors.toList());
+        return store.findPlacedSince(cutoff);
     }
 
     // 3. Get total revenue (sum of all order amounts)
     public double getTotalRevenue() {
-        return orders.stream()
-                .mapToDouble(Order::getTotalAmount)
-                .sum();
+        if (!loaded) {
+            return Money.toAmount(persistentStore.sumTotalCents());
+        }
+        return Money.toAmount(columns.sumTotalCents());
     }
 
     // 4. Get orders by status, sorted by date (newest first)
-    public List<Order> getOrdersByStatus(String status) {
-        return orders.stream()
-                .filter(o -> Objects.equals(o.getStatus(), status))
-                .sorted(Comparator.comparing(Order::getOrderDate).reversed())
-                .collect(Collectors.toList());
+    public List<Order> getOrdersByStatus(OrderStatus status) {
+        ensureLoaded();
+        return store.findByStatus(status);
     }
 
     // 5. Get the order with highest total amount
     public Optional<Order> getLargestOrder() {
+        ensureLoaded();
         return orders.stream()
-                .max(Comparator.comparingDouble(Order::getTotalAmount));
+                .max(Comparator.comparingLong(Order::getTotalCents));
     }
 
     // 6. Count orders by status
-    public Map<String, Long> getOrderCountByStatus() {
-        return orders.stream()
-                .collect(Collectors.groupingBy(Order::getStatus, Collectors.counting()));
+    public Map<OrderStatus, Long> getOrderCountByStatus() {
+        if (!loaded) {
+            return persistentStore.countByStatus();
+        }
+        return statusCounters.snapshot();
     }
 
     // 7. Get all unique product IDs that have been ordered
     public Set<Long> getAllOrderedProductIds() {
+        ensureLoaded();
         return orders.stream()
                 .flatMap(o -> o.getItems().stream())
                 .map(OrderItem::getProductId)
@@ -66,10 +159,26 @@ public class OrderService {
 
     // 8. Calculate average order value
     public double getAverageOrderValue() {
-        return orders.stream()
-                .mapToDouble(Order::getTotalAmount)
-                .average()
-                .orElse(0.0);
+        if (!loaded) {
+            int count = persistentStore.size();
+            return count == 0 ? 0.0 : Money.toAmount(persistentStore.sumTotalCents()) / count;
+        }
+        int count = columns.size();
+        return count == 0 ? 0.0 : Money.toAmount(columns.sumTotalCents()) / count;
     }
-}
 
+    // 9. Revenue from orders placed in the last N days
+    public double getRecentRevenue(int days) {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(days);
+        if (!loaded) {
+            return Money.toAmount(persistentStore.sumTotalCentsSince(cutoff));
+        }
+        return Money.toAmount(columns.sumTotalCentsSince(cutoff));
+    }
+
+    // 10. Re-apply statuses recovered from the order event log after a restart
+    public void restoreStatuses(Map<Long, OrderStatus> statuses) {
+        ensureLoaded();
+        statuses.forEach((id, status) -> store.findById(id).ifPresent(order -> order.restoreStatus(status)));
+    }
+}
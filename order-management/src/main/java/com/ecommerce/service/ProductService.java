@@ -1,16 +1,25 @@
 package com.ecommerce.service;
 
 import com.ecommerce.model.Product;
+import com.ecommerce.store.ProductCatalog;
 
 import java.util.*;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class ProductService {
-    private List<Product> products;
+    private final ProductCatalog catalog = new ProductCatalog();
+    private final Collection<Product> products = catalog.all();
 
+    // Products keep the order of the list; a later product with the same id replaces
+    // the earlier one in its place
     public ProductService(List<Product> products) {
-        this.products = products;
+        products.forEach(catalog::put);
+    }
+
+    // 0. Add a product, or replace the product with the same id (e.g. after a price change)
+    public void putProduct(Product product) {
+        catalog.put(product);
     }
 
     // 1. Find all products in a specific category
@@ -22,9 +31,7 @@ public class ProductService {
 
     // 2. Find all products with price between min and max (inclusive)
     public List<Product> getProductsInPriceRange(double min, double max) {
-        return products.stream()
-                .filter(p -> p.getPrice() >= min && p.getPrice() <= max)
-                .collect(Collectors.toList());
+        return catalog.findInPriceRange(min, max);
     }
 
     // 3. Get product names sorted alphabetically
@@ -37,8 +44,7 @@ public class ProductService {
 
     // 4. Find the most expensive product (return Optional)
     public Optional<Product> getMostExpensiveProduct() {
-        return products.stream()
-                .max(Comparator.comparingDouble(Product::getPrice));
+        return catalog.findMostExpensive();
     }
 
     // 5. Check if any product is out of stock (stockQuantity == 0)
@@ -62,10 +68,7 @@ public class ProductService {
 
     // 8. Get top N most expensive products
     public List<Product> getTopExpensiveProducts(int n) {
-        return products.stream()
-                .sorted(Comparator.comparingDouble(Product::getPrice).reversed())
-                .limit(n)
-                .collect(Collectors.toList());
+        return catalog.findMostExpensive(n);
     }
 
     // 9. Apply discount to all products in a category
@@ -89,5 +92,11 @@ public class ProductService {
                 .filter(criteria)
                 .collect(Collectors.toList());
     }
-}
 
+    // 11. Apply a category discount to the catalog itself; the price indexes follow
+    public List<Product> repriceCategory(String category, double discountPercent) {
+        List<Product> discounted = applyDiscountToCategory(category, discountPercent);
+        discounted.forEach(catalog::put);
+        return discounted;
+    }
+}
@@ -1,90 +1,170 @@
 package com.ecommerce.service;
 
+import com.ecommerce.concurrent.AsyncRetrier;
+import com.ecommerce.concurrent.CallNotPermittedException;
+import com.ecommerce.concurrent.Deadline;
+import com.ecommerce.concurrent.DeadlineExceededException;
+import com.ecommerce.concurrent.DependencyGuards;
+import com.ecommerce.concurrent.ExecutorRuntime;
+import com.ecommerce.concurrent.ExecutorRuntime.Dependency;
+import com.ecommerce.concurrent.Saga;
 import com.ecommerce.external.*;
 import com.ecommerce.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * BONUS: Enhanced OrderProcessor with error handling, retry logic, and timeouts
+ *
+ * Like {@link OrderProcessor}, each processOrder method first claims the order
+ * and returns null for one that is not pending or is already being processed.
  */
 public class RobustOrderProcessor {
     private static final Logger logger = LoggerFactory.getLogger(RobustOrderProcessor.class);
     
     private PaymentGateway paymentGateway = new PaymentGateway();
-    private InventorySystem inventorySystem = new InventorySystem();
+    private final InventorySystem inventorySystem;
     private ShippingProvider shippingProvider = new ShippingProvider();
     private NotificationService notificationService = new NotificationService();
+    private final ExecutorRuntime runtime;
+    private final DependencyGuards guards;
+    private final AsyncRetrier retrier;
     
     private static final int MAX_RETRIES = 3;
     private static final long TIMEOUT_SECONDS = 5;
+    private static final long RETRY_BASE_DELAY_MILLIS = 100;
+    private static final long RETRY_MAX_DELAY_MILLIS = 2_000;
+    // About 1.5s of backoff in all; an undo still failing after that is left for manual follow-up
+    private static final int COMPENSATION_ATTEMPTS = 5;
+
+    public RobustOrderProcessor() {
+        this(new InventorySystem());
+    }
+
+    public RobustOrderProcessor(InventorySystem inventorySystem) {
+        this(inventorySystem, ExecutorRuntime.shared());
+    }
+
+    public RobustOrderProcessor(InventorySystem inventorySystem, ExecutorRuntime runtime) {
+        this(inventorySystem, runtime, DependencyGuards.shared());
+    }
+
+    /**
+     * @param runtime bulkheaded executors that run orders and notifications
+     * @param guards circuit breakers and concurrency limits around each external service
+     */
+    public RobustOrderProcessor(InventorySystem inventorySystem, ExecutorRuntime runtime, DependencyGuards guards) {
+        this.inventorySystem = inventorySystem;
+        this.runtime = runtime;
+        this.guards = guards;
+        this.retrier = new AsyncRetrier("robust-order", MAX_RETRIES, RETRY_BASE_DELAY_MILLIS,
+                RETRY_MAX_DELAY_MILLIS, AsyncRetrier.TRANSIENT_FAILURES, runtime.scheduler());
+    }
 
     /**
      * BONUS 1: Error handling with rollback
      * If payment fails after inventory is checked, we need to handle it gracefully
+     *
+     * Runs the order as a saga. Each step declares how to undo itself, and steps
+     * that do not depend on each other run concurrently:
+     *
+     *   availability --+--> reserve --+
+     *                  +--> payment --+--> pickup
+     *   quote --------------------------+
+     *
+     * If any step fails, the completed steps are undone (refund, release stock),
+     * again concurrently where they are independent. Undos run on the runtime's
+     * compensation executor and are retried up to {@link #COMPENSATION_ATTEMPTS}
+     * times; those that still fail are logged with their last error. Refunds go
+     * straight to the gateway, so an open payment breaker cannot hold them up.
      */
     public String processOrderWithRollback(Order order, Customer customer) {
+        if (!claim(order)) {
+            return null;
+        }
         long startTime = System.currentTimeMillis();
-        boolean inventoryReserved = false;
-        boolean paymentProcessed = false;
+        logger.info("Starting order processing for order {}", order.getId());
         
-        try {
-            logger.info("Starting order processing for order {}", order.getId());
-            
+        AtomicReference<String> trackingNumber = new AtomicReference<>();
+        Executor inventory = runtime.bulkhead(Dependency.INVENTORY);
+        Executor payment = runtime.bulkhead(Dependency.PAYMENT);
+        Executor shipping = runtime.bulkhead(Dependency.SHIPPING);
+        
+        Saga saga = new Saga("order-" + order.getId(), runtime.bulkhead(Dependency.ORCHESTRATION),
+                runtime.compensations())
+            .compensationAttempts(COMPENSATION_ATTEMPTS)
             // Step 1: Check inventory
-            if (!inventorySystem.checkAvailability(order.getId())) {
-                logger.warn("Order {} failed: Inventory not available", order.getId());
-                return null;
-            }
-            
-            // Step 2: Reserve inventory
-            inventorySystem.reserveInventory(order.getId());
-            inventoryReserved = true;
-            logger.info("Inventory reserved for order {}", order.getId());
-            
-            // Step 3: Process payment (might fail!)
-            if (!paymentGateway.processPayment(order.getId(), order.getTotalAmount())) {
-                logger.error("Payment failed for order {}, rolling back inventory", order.getId());
-                // ROLLBACK: Release the reserved inventory
-                inventorySystem.releaseInventory(order.getId());
-                inventoryReserved = false;
-                return null;
-            }
-            paymentProcessed = true;
-            logger.info("Payment processed for order {}", order.getId());
-            
-            // Step 4: Get shipping quote and schedule pickup
-            double shippingCost = shippingProvider.getShippingQuote(order.getId(), customer.getCity());
-            String trackingNumber = shippingProvider.schedulePickup(order.getId());
-            
-            // Step 5: Send confirmation
-            notificationService.sendEmail(
-                customer.getEmail(),
-                "Order Confirmation #" + order.getId(),
-                "Your order has been confirmed. Tracking: " + trackingNumber
-            );
-            
-            long duration = System.currentTimeMillis() - startTime;
-            logger.info("Order {} processed successfully in {}ms", order.getId(), duration);
-            return trackingNumber;
-            
-        } catch (Exception e) {
-            logger.error("Error processing order {}: {}", order.getId(), e.getMessage(), e);
-            
-            // ROLLBACK: Clean up any partial state
-            if (inventoryReserved && !paymentProcessed) {
+            .step("availability", inventory, () -> {
+                if (!guarded(Dependency.INVENTORY, () -> inventorySystem.checkAvailability(order.getId()))) {
+                    throw new IllegalStateException("Inventory not available");
+                }
+            }, null)
+            // Step 2: Reserve inventory (ROLLBACK: release the reserved stock)
+            .step("reserve", inventory, () -> {
+                if (!inventorySystem.reserveInventory(order)) {
+                    throw new IllegalStateException("Could not reserve stock");
+                }
+                logger.info("Inventory reserved for order {}", order.getId());
+            }, () -> {
                 logger.info("Rolling back inventory reservation for order {}", order.getId());
-                inventorySystem.releaseInventory(order.getId());
-            }
-            
+                inventorySystem.releaseInventory(order);
+            }, "availability")
+            // Step 3: Process payment, might fail! (ROLLBACK: refund it)
+            .step("payment", payment, () -> {
+                if (!guarded(Dependency.PAYMENT, () -> paymentGateway.processPayment(order.getId(), order.getTotalAmount()))) {
+                    throw new IllegalStateException("Payment declined");
+                }
+                logger.info("Payment processed for order {}", order.getId());
+            }, () -> refund(order), "availability")
+            // Step 4: Get shipping quote and schedule pickup
+            .step("quote", shipping, () ->
+                guarded(Dependency.SHIPPING, () -> shippingProvider.getShippingQuote(order.getId(), customer.getCity())), null)
+            .step("pickup", shipping, () -> {
+                String tracking = guarded(Dependency.SHIPPING, () -> shippingProvider.schedulePickup(order.getId()));
+                if (tracking == null) {
+                    throw new IllegalStateException("Pickup could not be scheduled");
+                }
+                trackingNumber.set(tracking);
+            }, null, "reserve", "payment", "quote");
+        
+        Saga.Result result = saga.execute();
+        if (!result.isSuccess()) {
+            logger.error("Order {} failed at {}: {}", order.getId(), result.getFailedStep(),
+                result.getFailure().getMessage());
+            reportCompensationFailures(order, result);
             return null;
         }
+        inventorySystem.commitInventory(order);
+        
+        // Step 5: Send confirmation
+        try {
+            guarded(Dependency.NOTIFICATION, () -> {
+                notificationService.sendEmail(
+                    customer.getEmail(),
+                    "Order Confirmation #" + order.getId(),
+                    "Your order has been confirmed. Tracking: " + trackingNumber.get()
+                );
+                return null;
+            });
+        } catch (CallNotPermittedException e) {
+            logger.warn("Confirmation for order {} skipped: {}", order.getId(), e.getMessage());
+        }
+        
+        long duration = System.currentTimeMillis() - startTime;
+        logger.info("Order {} processed successfully in {}ms", order.getId(), duration);
+        return trackingNumber.get();
     }
 
     /**
      * BONUS 2: Retry logic - retry up to 3 times on failure
+     * Calls refused by a circuit breaker, concurrency limit or bulkhead
+     * (RejectedExecutionException) are not retried and are rethrown as is.
+     *
+     * The calling thread sleeps between attempts; prefer {@link #executeWithRetryAsync}.
      */
     public <T> T executeWithRetry(Callable<T> operation, String operationName) {
         int attempts = 0;
@@ -99,6 +179,10 @@ public class RobustOrderProcessor {
                     logger.info("{} succeeded on attempt {}", operationName, attempts);
                 }
                 return result;
+            } catch (RejectedExecutionException e) {
+                // Circuit open, limit reached or bulkhead full: retrying would only add load
+                logger.warn("{} refused on attempt {}, not retrying: {}", operationName, attempts, e.getMessage());
+                throw e;
             } catch (Exception e) {
                 lastException = e;
                 logger.warn("{} failed on attempt {}: {}", operationName, attempts, e.getMessage());
@@ -120,69 +204,180 @@ public class RobustOrderProcessor {
         throw new RuntimeException("Operation failed after " + MAX_RETRIES + " retries", lastException);
     }
 
+    /**
+     * BONUS 2: Retry without holding a thread while waiting
+     *
+     * Each attempt runs in the dependency's bulkhead through its guard; the wait
+     * before the next attempt is a timer on the runtime's scheduler. Delays use
+     * decorrelated jitter, and retries draw on the dependency's retry budget.
+     * Refusals (circuit open, limit reached, bulkhead full) are not retried.
+     */
+    public <T> CompletableFuture<T> executeWithRetryAsync(Dependency dependency, Callable<T> operation,
+                                                          String operationName) {
+        return executeWithRetryAsync(dependency, operation, operationName, null);
+    }
+
+    /**
+     * Same as above, but no retry starts after the deadline (null for none)
+     */
+    public <T> CompletableFuture<T> executeWithRetryAsync(Dependency dependency, Callable<T> operation,
+                                                          String operationName, Deadline deadline) {
+        return retrier.execute(
+            () -> runtime.submit(dependency, () -> guarded(dependency, operation)),
+            guards.guard(dependency).getRetryBudget(),
+            deadline
+        ).whenComplete((result, error) -> {
+            if (error != null) {
+                logger.warn("{} failed: {}", operationName, error.getMessage());
+            }
+        });
+    }
+
     /**
      * BONUS 3: Timeout handling - cancel if operation takes too long
+     *
+     * The timeout is a Deadline that every external call receives. A step is
+     * skipped when too little time is left for it, a call still running at the
+     * deadline is interrupted, and no retry starts after it. The order then
+     * fails like any other saga step: reserved stock is released and a taken
+     * payment refunded. A payment request that went out and was interrupted by
+     * the deadline counts as possibly taken and is refunded too. Compensations
+     * are not bound by the deadline, but are retried a bounded number of times.
      */
     public String processOrderWithTimeout(Order order, Customer customer) {
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+        if (!claim(order)) {
+            return null;
+        }
+        long startTime = System.currentTimeMillis();
+        logger.info("Processing order {} with {}s timeout", order.getId(), TIMEOUT_SECONDS);
         
-        try {
-            logger.info("Processing order {} with {}s timeout", order.getId(), TIMEOUT_SECONDS);
-            
-            Future<String> future = executor.submit(() -> {
-                // Check inventory with retry
-                Boolean inventoryAvailable = executeWithRetry(
-                    () -> inventorySystem.checkAvailability(order.getId()),
-                    "Inventory check for order " + order.getId()
-                );
-                
-                if (!inventoryAvailable) {
-                    return null;
+        Deadline deadline = Deadline.after(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        AtomicReference<String> trackingNumber = new AtomicReference<>();
+        // Whether a payment request went out at all, and whether the gateway turned it down
+        AtomicBoolean sent = new AtomicBoolean();
+        AtomicBoolean declined = new AtomicBoolean();
+        
+        // Steps run on orchestration threads and wait for their calls in the dependency bulkheads
+        Saga saga = new Saga("order-" + order.getId() + "-timeout", runtime.bulkhead(Dependency.ORCHESTRATION),
+                runtime.compensations())
+            .compensationAttempts(COMPENSATION_ATTEMPTS)
+            // Check inventory with retry
+            .step("availability", () -> {
+                if (!deadline.await("Inventory check for order " + order.getId(), executeWithRetryAsync(
+                        Dependency.INVENTORY,
+                        () -> inventorySystem.checkAvailability(order.getId(), deadline),
+                        "Inventory check for order " + order.getId(), deadline))) {
+                    throw new IllegalStateException("Inventory not available");
                 }
-                
-                // Process payment with retry
-                Boolean paymentSuccess = executeWithRetry(
-                    () -> paymentGateway.processPayment(order.getId(), order.getTotalAmount()),
-                    "Payment for order " + order.getId()
-                );
-                
-                if (!paymentSuccess) {
-                    return null;
+            }, null)
+            // Reserve inventory (ROLLBACK: release the reserved stock)
+            .step("reserve", () -> {
+                if (!inventorySystem.reserveInventory(order, deadline)) {
+                    throw new IllegalStateException("Could not reserve stock");
                 }
-                
-                // Reserve inventory
-                inventorySystem.reserveInventory(order.getId());
-                
-                // Get shipping and schedule pickup
-                shippingProvider.getShippingQuote(order.getId(), customer.getCity());
-                String trackingNumber = shippingProvider.schedulePickup(order.getId());
-                
-                // Send email asynchronously
-                CompletableFuture.runAsync(() -> 
-                    notificationService.sendEmail(
-                        customer.getEmail(),
-                        "Order Confirmation #" + order.getId(),
-                        "Your order has been confirmed. Tracking: " + trackingNumber
-                    )
+            }, () -> inventorySystem.releaseInventory(order), "availability")
+            // Process payment with retry (ROLLBACK: refund it). A charge cut off by the deadline
+            // may still have gone through, so a request that was sent and not clearly declined is
+            // refunded. One refused by the breaker or skipped by the deadline never reached the gateway.
+            .uncertainStep("payment", () -> {
+                if (!deadline.await("Payment for order " + order.getId(), executeWithRetryAsync(
+                        Dependency.PAYMENT,
+                        () -> paymentGateway.processPayment(order.getId(), order.getTotalAmount(), deadline,
+                            () -> sent.set(true)),
+                        "Payment for order " + order.getId(), deadline))) {
+                    declined.set(true);
+                    throw new IllegalStateException("Payment declined");
+                }
+            }, () -> {
+                if (sent.get() && !declined.get()) {
+                    refund(order);
+                }
+            }, "availability")
+            // Get shipping and schedule pickup
+            .step("quote", () -> deadline.await("Shipping quote for order " + order.getId(),
+                runtime.submit(Dependency.SHIPPING, () -> guarded(Dependency.SHIPPING,
+                    () -> shippingProvider.getShippingQuote(order.getId(), customer.getCity(), deadline)))), null)
+            .step("pickup", () -> {
+                String tracking = deadline.await("Pickup for order " + order.getId(),
+                    runtime.submit(Dependency.SHIPPING, () -> guarded(Dependency.SHIPPING,
+                        () -> shippingProvider.schedulePickup(order.getId(), deadline))));
+                if (tracking == null) {
+                    throw new IllegalStateException("Pickup could not be scheduled");
+                }
+                trackingNumber.set(tracking);
+            }, null, "reserve", "payment", "quote");
+        
+        Saga.Result result = saga.execute();
+        if (!result.isSuccess()) {
+            if (result.getFailure() instanceof DeadlineExceededException) {
+                logger.error("Order {} timed out after {}s at {}: {}", order.getId(), TIMEOUT_SECONDS,
+                    result.getFailedStep(), result.getFailure().getMessage());
+            } else {
+                logger.error("Error processing order {} at {}: {}", order.getId(), result.getFailedStep(),
+                    result.getFailure().getMessage());
+            }
+            reportCompensationFailures(order, result);
+            return null;
+        }
+        inventorySystem.commitInventory(order);
+        
+        // Send email asynchronously; it is still cut off at the deadline
+        try {
+            runtime.submit(Dependency.NOTIFICATION, () -> guarded(Dependency.NOTIFICATION, () -> {
+                notificationService.sendEmail(
+                    customer.getEmail(),
+                    "Order Confirmation #" + order.getId(),
+                    "Your order has been confirmed. Tracking: " + trackingNumber.get(),
+                    deadline
                 );
-                
-                return trackingNumber;
+                return null;
+            })).whenComplete((v, e) -> {
+                if (e != null) {
+                    logger.warn("Confirmation for order {} not sent: {}", order.getId(), e.getMessage());
+                }
             });
-            
-            // Wait for result with timeout
-            String result = future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
-            logger.info("Order {} completed within timeout", order.getId());
-            return result;
-            
-        } catch (TimeoutException e) {
-            logger.error("Order {} timed out after {}s", order.getId(), TIMEOUT_SECONDS);
-            return null;
-        } catch (Exception e) {
-            logger.error("Error processing order {}: {}", order.getId(), e.getMessage(), e);
-            return null;
-        } finally {
-            executor.shutdownNow();
+        } catch (RejectedExecutionException e) {
+            logger.warn("Confirmation for order {} dropped: {}", order.getId(), e.getMessage());
         }
+        
+        logger.info("Order {} completed within timeout in {}ms", order.getId(),
+            System.currentTimeMillis() - startTime);
+        return trackingNumber.get();
     }
-}
 
+    /**
+     * Refunds straight through the gateway, bypassing the payment guard: the
+     * money is owed whether or not the breaker is open.
+     * @throws IllegalStateException if the gateway did not refund it, so the saga retries
+     */
+    private void refund(Order order) {
+        logger.info("Refunding payment for order {}", order.getId());
+        if (!paymentGateway.refundPayment(order.getId(), order.getTotalAmount())) {
+            throw new IllegalStateException("Refund failed for order " + order.getId());
+        }
+    }
+
+    // Undos that ran out of attempts need someone to finish them by hand
+    private void reportCompensationFailures(Order order, Saga.Result result) {
+        result.getCompensationFailures().forEach((step, failure) ->
+            logger.error("Order {} rollback of {} failed after {} attempts: {}", order.getId(), step,
+                COMPENSATION_ATTEMPTS, failure.getMessage()));
+    }
+
+    // Takes the order before anything is reserved or charged, see Order#claim()
+    private boolean claim(Order order) {
+        if (order.claim()) {
+            return true;
+        }
+        logger.warn("Order {} skipped: already claimed or {}", order.getId(), order.getStatus());
+        return false;
+    }
+
+    /**
+     * Calls an external service through its circuit breaker and concurrency limit.
+     * @throws CallNotPermittedException if the guard refuses the call
+     */
+    private <T> T guarded(Dependency dependency, Callable<T> call) {
+        return guards.guard(dependency).call(call);
+    }
+}
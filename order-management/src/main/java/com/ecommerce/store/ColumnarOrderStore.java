@@ -0,0 +1,229 @@
+package com.ecommerce.store;
+
+import com.ecommerce.model.Order;
+import com.ecommerce.model.OrderStatus;
+import com.ecommerce.model.OrderStatusListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Struct-of-arrays copy of the order fields used by analytics queries
+ * (ids, customer ids, epoch-millis, status codes, totals in cents).
+ *
+ * Scans walk primitive arrays instead of Order objects; above
+ * {@link #PARALLEL_THRESHOLD} rows they are split across the fork/join pool.
+ * Writers are serialized and end with a single volatile write that packs the
+ * refresh count and the row count into one long. Readers read that long once
+ * before scanning, so they see every write made before it.
+ * Stored status and total follow the order through its listener callbacks.
+ */
+public class ColumnarOrderStore implements OrderStatusListener {
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int LEAF_SIZE = 1 << 14;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final byte NO_STATUS = 0;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] customerIds = new long[INITIAL_CAPACITY];
+    private long[] epochMillis = new long[INITIAL_CAPACITY];
+    private byte[] statusCodes = new byte[INITIAL_CAPACITY];
+    private long[] totalCents = new long[INITIAL_CAPACITY];
+    // Guarded by this
+    private int size;
+    private int refreshes;
+    // Refresh count in the high half, row count in the low half
+    private volatile long published;
+
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    private final Map<Long, Integer> rowById = new ConcurrentHashMap<>();
+
+    /**
+     * Appends an order as a new row. Appending the same order id twice is a no-op.
+     */
+    public synchronized boolean append(Order order) {
+        if (rowById.containsKey(order.getId())) {
+            return false;
+        }
+        int row = size;
+        if (row == ids.length) {
+            grow();
+        }
+        ids[row] = order.getId();
+        customerIds[row] = order.getCustomerId();
+        epochMillis[row] = toEpochMillis(order.getOrderDate());
+        statusCodes[row] = statusCode(order.getStatus());
+        totalCents[row] = order.getTotalCents();
+        rowById.put(order.getId(), row);
+        size = row + 1;
+        publish();
+        return true;
+    }
+
+    /**
+     * Re-reads the mutable columns (status, total) of an already stored order.
+     */
+    public synchronized void refresh(Order order) {
+        Integer row = rowById.get(order.getId());
+        if (row != null) {
+            statusCodes[row] = statusCode(order.getStatus());
+            totalCents[row] = order.getTotalCents();
+            refreshes++;
+            publish();
+        }
+    }
+
+    // Changes on every write, so readers of the row count also see in-place updates
+    private void publish() {
+        published = ((long) refreshes << 32) | size;
+    }
+
+    @Override
+    public void onStatusChange(Order order, OrderStatus oldStatus, OrderStatus newStatus) {
+        refresh(order);
+    }
+
+    @Override
+    public void onTotalChange(Order order, long oldTotalCents, long newTotalCents) {
+        refresh(order);
+    }
+
+    public int size() {
+        return publishedSize();
+    }
+
+    // Row count to scan, from the one volatile read that makes every earlier write visible
+    private int publishedSize() {
+        return (int) published;
+    }
+
+    // Sum of all order totals in cents
+    public long sumTotalCents() {
+        int n = publishedSize();
+        return scan(new SumTask(totalCents, epochMillis, Long.MIN_VALUE, 0, n), n);
+    }
+
+    // Sum of totals in cents for orders placed at or after the cutoff
+    public long sumTotalCentsSince(LocalDateTime cutoff) {
+        int n = publishedSize();
+        return scan(new SumTask(totalCents, epochMillis, toEpochMillis(cutoff), 0, n), n);
+    }
+
+    // Order count per status
+    public Map<OrderStatus, Long> countByStatus() {
+        int n = publishedSize();
+        long[] counts = n >= PARALLEL_THRESHOLD
+                ? ForkJoinPool.commonPool().invoke(new StatusCountTask(statusCodes, 0, n))
+                : StatusCountTask.countRange(statusCodes, 0, n);
+        Map<OrderStatus, Long> result = new EnumMap<>(OrderStatus.class);
+        for (OrderStatus status : STATUSES) {
+            long count = counts[status.ordinal() + 1];
+            if (count > 0) {
+                result.put(status, count);
+            }
+        }
+        return result;
+    }
+
+    private static long scan(RecursiveTask<Long> task, int n) {
+        return n >= PARALLEL_THRESHOLD ? ForkJoinPool.commonPool().invoke(task) : task.invoke();
+    }
+
+    private static byte statusCode(OrderStatus status) {
+        return status == null ? NO_STATUS : (byte) (status.ordinal() + 1);
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        customerIds = Arrays.copyOf(customerIds, capacity);
+        epochMillis = Arrays.copyOf(epochMillis, capacity);
+        statusCodes = Arrays.copyOf(statusCodes, capacity);
+        totalCents = Arrays.copyOf(totalCents, capacity);
+    }
+
+    static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static final class SumTask extends RecursiveTask<Long> {
+        private final long[] cents;
+        private final long[] millis;
+        private final long fromMillis;
+        private final int from;
+        private final int to;
+
+        SumTask(long[] cents, long[] millis, long fromMillis, int from, int to) {
+            this.cents = cents;
+            this.millis = millis;
+            this.fromMillis = fromMillis;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= LEAF_SIZE) {
+                long sum = 0;
+                if (fromMillis == Long.MIN_VALUE) {
+                    for (int i = from; i < to; i++) {
+                        sum += cents[i];
+                    }
+                } else {
+                    for (int i = from; i < to; i++) {
+                        if (millis[i] >= fromMillis) {
+                            sum += cents[i];
+                        }
+                    }
+                }
+                return sum;
+            }
+            int mid = (from + to) >>> 1;
+            SumTask left = new SumTask(cents, millis, fromMillis, from, mid);
+            left.fork();
+            long right = new SumTask(cents, millis, fromMillis, mid, to).compute();
+            return right + left.join();
+        }
+    }
+
+    private static final class StatusCountTask extends RecursiveTask<long[]> {
+        private final byte[] codes;
+        private final int from;
+        private final int to;
+
+        StatusCountTask(byte[] codes, int from, int to) {
+            this.codes = codes;
+            this.from = from;
+            this.to = to;
+        }
+
+        static long[] countRange(byte[] codes, int from, int to) {
+            long[] counts = new long[STATUSES.length + 1];
+            for (int i = from; i < to; i++) {
+                counts[codes[i]]++;
+            }
+            return counts;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= LEAF_SIZE) {
+                return countRange(codes, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            StatusCountTask left = new StatusCountTask(codes, from, mid);
+            left.fork();
+            long[] counts = new StatusCountTask(codes, mid, to).compute();
+            long[] leftCounts = left.join();
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += leftCounts[i];
+            }
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.ecommerce.store;
+
+import com.ecommerce.model.Customer;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent customer registry with secondary indexes:
+ * - unique email index (emails are trimmed and lower-cased)
+ * - city -> customers (customers without a city are found with a null city)
+ * - premium flag bitset
+ *
+ * Every customer gets a dense slot in registration order; the indexes hold slots,
+ * so results come back in registration order. Reads are lock-free; inserts and
+ * updates are serialized by a single write lock.
+ */
+public class CustomerRegistry {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Map<Long, Integer> slotById = new ConcurrentHashMap<>();
+    private final Map<String, Integer> slotByEmail = new ConcurrentHashMap<>();
+    private final Map<String, NavigableSet<Integer>> slotsByCity = new ConcurrentHashMap<>();
+    private final NavigableSet<Integer> slotsWithoutCity = new ConcurrentSkipListSet<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile AtomicReferenceArray<Customer> customers = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private volatile AtomicLongArray premiumBits = new AtomicLongArray(INITIAL_CAPACITY / 64);
+    private volatile int size;
+
+    /**
+     * Registers a new customer.
+     * @throws IllegalArgumentException if the id or email is already registered
+     */
+    public void add(Customer customer) {
+        writeLock.lock();
+        try {
+            if (slotById.containsKey(customer.getId())) {
+                throw new IllegalArgumentException("Customer " + customer.getId() + " is already registered");
+            }
+            int slot = size;
+            checkEmailAvailable(customer, slot);
+            if (slot == customers.length()) {
+                grow();
+            }
+            // Publish the customer before any index can point readers at its slot
+            customers.set(slot, customer);
+            indexEmail(customer.getEmail(), slot);
+            slotById.put(customer.getId(), slot);
+            indexCity(customer.getCity(), slot);
+            setPremium(slot, customer.isPremium());
+            size = slot + 1;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces a registered customer (matched by id) and re-indexes it.
+     * @throws IllegalArgumentException if the id is unknown or the new email belongs to another customer
+     */
+    public void update(Customer customer) {
+        writeLock.lock();
+        try {
+            Integer slot = slotById.get(customer.getId());
+            if (slot == null) {
+                throw new IllegalArgumentException("Customer " + customer.getId() + " is not registered");
+            }
+            checkEmailAvailable(customer, slot);
+            Customer previous = customers.get(slot);
+            customers.set(slot, customer);
+            String oldEmail = normalizeEmail(previous.getEmail());
+            if (!Objects.equals(oldEmail, normalizeEmail(customer.getEmail()))) {
+                indexEmail(customer.getEmail(), slot);
+                if (oldEmail != null) {
+                    slotByEmail.remove(oldEmail, slot);
+                }
+            }
+            if (!Objects.equals(previous.getCity(), customer.getCity())) {
+                indexCity(customer.getCity(), slot);
+                unindexCity(previous.getCity(), slot);
+            }
+            setPremium(slot, customer.isPremium());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public Optional<Customer> findById(Long id) {
+        Integer slot = slotById.get(id);
+        return slot == null ? Optional.empty() : Optional.of(customers.get(slot));
+    }
+
+    public Optional<Customer> findByEmail(String email) {
+        String key = normalizeEmail(email);
+        Integer slot = key == null ? null : slotByEmail.get(key);
+        return slot == null ? Optional.empty() : Optional.of(customers.get(slot));
+    }
+
+    public List<Customer> findByCity(String city) {
+        NavigableSet<Integer> slots = city == null ? slotsWithoutCity : slotsByCity.get(city);
+        List<Customer> result = new ArrayList<>();
+        if (slots != null) {
+            AtomicReferenceArray<Customer> current = customers;
+            for (int slot : slots) {
+                result.add(current.get(slot));
+            }
+        }
+        return result;
+    }
+
+    public List<Customer> findPremium() {
+        return partitionByPremium().get(true);
+    }
+
+    /**
+     * Splits customers by the premium bitset in one pass over its words.
+     */
+    public Map<Boolean, List<Customer>> partitionByPremium() {
+        int n = size;
+        AtomicReferenceArray<Customer> current = customers;
+        AtomicLongArray bits = premiumBits;
+        List<Customer> premium = new ArrayList<>();
+        List<Customer> regular = new ArrayList<>();
+        for (int word = 0; word * 64 < n; word++) {
+            long value = bits.get(word);
+            int end = Math.min(n, (word + 1) * 64);
+            for (int slot = word * 64; slot < end; slot++) {
+                ((value & (1L << slot)) != 0 ? premium : regular).add(current.get(slot));
+            }
+        }
+        Map<Boolean, List<Customer>> result = new HashMap<>();
+        result.put(true, premium);
+        result.put(false, regular);
+        return result;
+    }
+
+    /**
+     * All customers in registration order.
+     */
+    public List<Customer> all() {
+        int n = size;
+        AtomicReferenceArray<Customer> current = customers;
+        List<Customer> result = new ArrayList<>(n);
+        for (int slot = 0; slot < n; slot++) {
+            result.add(current.get(slot));
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Writers hold the write lock, so a check followed by indexEmail cannot race another writer
+    private void checkEmailAvailable(Customer customer, int slot) {
+        String email = normalizeEmail(customer.getEmail());
+        Integer owner = email == null ? null : slotByEmail.get(email);
+        if (owner != null && owner != slot) {
+            throw new IllegalArgumentException("Email " + customer.getEmail() + " is already registered");
+        }
+    }
+
+    private void indexEmail(String email, int slot) {
+        String key = normalizeEmail(email);
+        if (key != null) {
+            slotByEmail.put(key, slot);
+        }
+    }
+
+    private void indexCity(String city, int slot) {
+        if (city == null) {
+            slotsWithoutCity.add(slot);
+        } else {
+            slotsByCity.computeIfAbsent(city, c -> new ConcurrentSkipListSet<>()).add(slot);
+        }
+    }
+
+    private void unindexCity(String city, int slot) {
+        NavigableSet<Integer> slots = city == null ? slotsWithoutCity : slotsByCity.get(city);
+        if (slots != null) {
+            slots.remove(slot);
+        }
+    }
+
+    private void setPremium(int slot, boolean premium) {
+        AtomicLongArray bits = premiumBits;
+        int word = slot >>> 6;
+        long mask = 1L << slot;
+        long value = bits.get(word);
+        bits.set(word, premium ? value | mask : value & ~mask);
+    }
+
+    // Called with the write lock held
+    private void grow() {
+        int capacity = customers.length() * 2;
+        AtomicReferenceArray<Customer> grownCustomers = new AtomicReferenceArray<>(capacity);
+        AtomicLongArray grownBits = new AtomicLongArray(capacity / 64);
+        for (int i = 0; i < size; i++) {
+            grownCustomers.set(i, customers.get(i));
+        }
+        for (int i = 0; i < premiumBits.length(); i++) {
+            grownBits.set(i, premiumBits.get(i));
+        }
+        customers = grownCustomers;
+        premiumBits = grownBits;
+    }
+}
@@ -0,0 +1,114 @@
+package com.ecommerce.store;
+
+import com.ecommerce.model.Order;
+import com.ecommerce.model.OrderStatus;
+import com.ecommerce.model.OrderStatusListener;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Order store with incrementally maintained secondary indexes:
+ * - all orders in insertion order
+ * - customerId -> orders (insertion order)
+ * - status -> orders sorted by date, newest first
+ * - all orders sorted by date
+ *
+ * Lookups cost time proportional to the result size instead of a full scan.
+ * Status indexes follow {@link Order#setStatus} through a status listener.
+ */
+public class IndexedOrderStore implements OrderStatusListener {
+    private static final Comparator<Order> BY_DATE =
+            Comparator.comparing(Order::getOrderDate).thenComparing(Order::getId);
+    private static final Comparator<Order> BY_DATE_DESC = BY_DATE.reversed();
+
+    private final Map<Long, Order> byId = new ConcurrentHashMap<>();
+    private final Queue<Order> inInsertionOrder = new ConcurrentLinkedQueue<>();
+    private final Map<Long, Queue<Order>> byCustomer = new ConcurrentHashMap<>();
+    private final Map<OrderStatus, NavigableSet<Order>> byStatus = new EnumMap<>(OrderStatus.class);
+    private final NavigableSet<Order> byDate = new ConcurrentSkipListSet<>(BY_DATE);
+
+    public IndexedOrderStore() {
+        // Populated once up front; the map itself is never modified afterwards
+        for (OrderStatus status : OrderStatus.values()) {
+            byStatus.put(status, new ConcurrentSkipListSet<>(BY_DATE_DESC));
+        }
+    }
+
+    /**
+     * Adds an order to all indexes. Adding the same order id twice is a no-op.
+     */
+    public boolean add(Order order) {
+        if (byId.putIfAbsent(order.getId(), order) != null) {
+            return false;
+        }
+        inInsertionOrder.add(order);
+        byCustomer.computeIfAbsent(order.getCustomerId(), id -> new ConcurrentLinkedQueue<>()).add(order);
+        byDate.add(order);
+        indexStatus(order, order.getStatus());
+        order.addStatusListener(this);
+        return true;
+    }
+
+    public Optional<Order> findById(Long id) {
+        return Optional.ofNullable(byId.get(id));
+    }
+
+    public List<Order> findByCustomer(Long customerId) {
+        Queue<Order> orders = byCustomer.get(customerId);
+        return orders == null ? new ArrayList<>() : new ArrayList<>(orders);
+    }
+
+    /**
+     * Orders with the given status, newest first.
+     */
+    public List<Order> findByStatus(OrderStatus status) {
+        return new ArrayList<>(byStatus.get(status));
+    }
+
+    /**
+     * Orders placed at or after the cutoff, oldest first.
+     */
+    public List<Order> findPlacedSince(LocalDateTime cutoff) {
+        Order probe = new Order(Long.MIN_VALUE, null, Collections.emptyList(), cutoff, null);
+        return new ArrayList<>(byDate.tailSet(probe, true));
+    }
+
+    /**
+     * All orders in the order they were added.
+     */
+    public Collection<Order> all() {
+        return Collections.unmodifiableCollection(inInsertionOrder);
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    @Override
+    public void onStatusChange(Order order, OrderStatus oldStatus, OrderStatus newStatus) {
+        unindexStatus(order, oldStatus);
+        indexStatus(order, newStatus);
+        // A concurrent transition may have overtaken us; re-sync with the current status
+        OrderStatus current = order.getStatus();
+        if (current != newStatus) {
+            unindexStatus(order, newStatus);
+            indexStatus(order, current);
+        }
+    }
+
+    private void indexStatus(Order order, OrderStatus status) {
+        if (status != null) {
+            byStatus.get(status).add(order);
+        }
+    }
+
+    private void unindexStatus(Order order, OrderStatus status) {
+        if (status != null) {
+            byStatus.get(status).remove(order);
+        }
+    }
+}
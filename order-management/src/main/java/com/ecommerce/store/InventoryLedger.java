@@ -0,0 +1,188 @@
+package com.ecommerce.store;
+
+import com.ecommerce.model.OrderItem;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stock ledger keyed by product id.
+ *
+ * Each product has an available and a reserved counter, both changed with CAS,
+ * so there are no locks and no deadlocks. An order reserves all of its items
+ * or none: quantities are taken one product at a time, and if any product is
+ * short, what was already taken is put back. The reservation becomes visible
+ * only once all of its stock is taken. Reservations are then committed
+ * (stock leaves the warehouse) or released (stock becomes available again).
+ *
+ * An {@link #unlimited()} ledger tracks reservations but never runs short.
+ */
+public class InventoryLedger {
+    private final Map<Long, StockCell> stock = new ConcurrentHashMap<>();
+    private final Map<Long, Map<Long, Integer>> reservations = new ConcurrentHashMap<>();
+    // Orders whose reserve call is still taking stock
+    private final Set<Long> reserving = ConcurrentHashMap.newKeySet();
+    private final boolean unlimited;
+
+    public InventoryLedger() {
+        this(false);
+    }
+
+    private InventoryLedger(boolean unlimited) {
+        this.unlimited = unlimited;
+    }
+
+    /**
+     * A ledger whose stock levels are not enforced: every reservation succeeds
+     * and only the reserved quantities are counted.
+     */
+    public static InventoryLedger unlimited() {
+        return new InventoryLedger(true);
+    }
+
+    public boolean isUnlimited() {
+        return unlimited;
+    }
+
+    /**
+     * Sets the available quantity of a product (e.g. from a stock count).
+     * @throws IllegalStateException on an unlimited ledger, which would ignore it
+     */
+    public void setStock(long productId, int quantity) {
+        checkTracked();
+        cell(productId).available.set(quantity);
+    }
+
+    /**
+     * Adds received stock to a product's available quantity.
+     * @throws IllegalStateException on an unlimited ledger, which would ignore it
+     */
+    public void restock(long productId, int quantity) {
+        checkTracked();
+        cell(productId).available.addAndGet(quantity);
+    }
+
+    public int getAvailable(long productId) {
+        StockCell cell = stock.get(productId);
+        return cell == null ? 0 : cell.available.get();
+    }
+
+    public int getReserved(long productId) {
+        StockCell cell = stock.get(productId);
+        return cell == null ? 0 : cell.reserved.get();
+    }
+
+    /**
+     * Reserves every item of an order, or nothing.
+     * Only one reservation per order: a second call, made while the first is
+     * in progress or after it succeeded, takes nothing and returns false.
+     * @return false if any product lacks stock, or the order is already reserved
+     */
+    public boolean reserve(long orderId, List<OrderItem> items) {
+        if (!reserving.add(orderId)) {
+            return false;
+        }
+        try {
+            if (reservations.containsKey(orderId)) {
+                return false;
+            }
+            Map<Long, Integer> quantities = new TreeMap<>();
+            for (OrderItem item : items) {
+                quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            }
+            if (unlimited) {
+                quantities.forEach((productId, quantity) -> cell(productId).reserved.addAndGet(quantity));
+            } else if (!takeAll(quantities)) {
+                return false;
+            }
+            reservations.put(orderId, quantities);
+            return true;
+        } finally {
+            reserving.remove(orderId);
+        }
+    }
+
+    // Takes every quantity, or puts back what was taken and returns false
+    private boolean takeAll(Map<Long, Integer> quantities) {
+        List<Map.Entry<Long, Integer>> taken = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            StockCell cell = stock.get(entry.getKey());
+            if (cell == null || !cell.tryTake(entry.getValue())) {
+                for (Map.Entry<Long, Integer> undo : taken) {
+                    stock.get(undo.getKey()).giveBack(undo.getValue());
+                }
+                return false;
+            }
+            taken.add(entry);
+        }
+        return true;
+    }
+
+    /**
+     * Consumes an order's reservation: the stock is gone for good.
+     * @return false if the order holds no reservation
+     */
+    public boolean commit(long orderId) {
+        Map<Long, Integer> quantities = reservations.remove(orderId);
+        if (quantities == null) {
+            return false;
+        }
+        quantities.forEach((productId, quantity) -> stock.get(productId).reserved.addAndGet(-quantity));
+        return true;
+    }
+
+    /**
+     * Returns an order's reserved stock to the available pool.
+     * @return false if the order holds no reservation
+     */
+    public boolean release(long orderId) {
+        Map<Long, Integer> quantities = reservations.remove(orderId);
+        if (quantities == null) {
+            return false;
+        }
+        if (unlimited) {
+            quantities.forEach((productId, quantity) -> stock.get(productId).reserved.addAndGet(-quantity));
+        } else {
+            quantities.forEach((productId, quantity) -> stock.get(productId).giveBack(quantity));
+        }
+        return true;
+    }
+
+    public boolean hasReservation(long orderId) {
+        return reservations.containsKey(orderId);
+    }
+
+    private void checkTracked() {
+        if (unlimited) {
+            throw new IllegalStateException("Stock levels are not tracked by an unlimited ledger");
+        }
+    }
+
+    private StockCell cell(long productId) {
+        return stock.computeIfAbsent(productId, id -> new StockCell());
+    }
+
+    private static final class StockCell {
+        final AtomicInteger available = new AtomicInteger();
+        final AtomicInteger reserved = new AtomicInteger();
+
+        boolean tryTake(int quantity) {
+            while (true) {
+                int current = available.get();
+                if (current < quantity) {
+                    return false;
+                }
+                if (available.compareAndSet(current, current - quantity)) {
+                    reserved.addAndGet(quantity);
+                    return true;
+                }
+            }
+        }
+
+        void giveBack(int quantity) {
+            reserved.addAndGet(-quantity);
+            available.addAndGet(quantity);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.ecommerce.store;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Continuously maintained ranking by score, highest first.
+ *
+ * Every element is kept in a concurrent skip list keyed by (score, id), and
+ * an immutable snapshot of the top {@code capacity} is rebuilt only when an
+ * update can affect it. Reading the top N (N <= capacity) is therefore
+ * constant time.
+ */
+public class Leaderboard<T> {
+    private final int capacity;
+    private final Function<T, Long> idOf;
+    private final ToDoubleFunction<T> scoreOf;
+    private final ConcurrentSkipListMap<Rank, T> ranking = new ConcurrentSkipListMap<>();
+    private final Map<Long, Rank> rankById = new ConcurrentHashMap<>();
+    private final Object snapshotLock = new Object();
+    private volatile List<T> snapshot = Collections.emptyList();
+
+    public Leaderboard(int capacity, Function<T, Long> idOf, ToDoubleFunction<T> scoreOf) {
+        this.capacity = capacity;
+        this.idOf = idOf;
+        this.scoreOf = scoreOf;
+    }
+
+    /**
+     * Inserts an element or moves it to its new score.
+     */
+    public void update(T item) {
+        Long id = idOf.apply(item);
+        Rank rank = new Rank(scoreOf.applyAsDouble(item), id);
+        Rank[] replaced = new Rank[1];
+        rankById.compute(id, (key, previous) -> {
+            ranking.put(rank, item);
+            if (previous != null && !previous.equals(rank)) {
+                ranking.remove(previous);
+            }
+            replaced[0] = previous;
+            return rank;
+        });
+        // Checked under the lock so a concurrent rebuild cannot publish a snapshot that misses this update
+        synchronized (snapshotLock) {
+            if (isInTop(rank) || (replaced[0] != null && isInTop(replaced[0]))) {
+                rebuildSnapshot();
+            }
+        }
+    }
+
+    public void remove(Long id) {
+        Rank previous = rankById.remove(id);
+        if (previous != null && ranking.remove(previous) != null) {
+            synchronized (snapshotLock) {
+                if (isInTop(previous)) {
+                    rebuildSnapshot();
+                }
+            }
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * The n highest-ranked elements, highest first. n must not exceed the capacity.
+     */
+    public List<T> top(int n) {
+        if (n > capacity) {
+            throw new IllegalArgumentException("Leaderboard only tracks the top " + capacity);
+        }
+        List<T> current = snapshot;
+        return current.subList(0, Math.min(n, current.size()));
+    }
+
+    // Whether a rank is (or was) within the tracked top by comparing with the current snapshot cut-off
+    private boolean isInTop(Rank rank) {
+        List<T> current = snapshot;
+        if (current.size() < capacity) {
+            return true;
+        }
+        T last = current.get(current.size() - 1);
+        return rank.compareTo(new Rank(scoreOf.applyAsDouble(last), idOf.apply(last))) <= 0;
+    }
+
+    private void rebuildSnapshot() {
+        synchronized (snapshotLock) {
+            List<T> top = new ArrayList<>(capacity);
+            Iterator<T> it = ranking.values().iterator();
+            while (top.size() < capacity && it.hasNext()) {
+                top.add(it.next());
+            }
+            snapshot = Collections.unmodifiableList(top);
+        }
+    }
+
+    // Orders by score descending, then id ascending
+    private static final class Rank implements Comparable<Rank> {
+        private final double score;
+        private final long id;
+
+        Rank(double score, long id) {
+            this.score = score;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Rank other) {
+            int byScore = Double.compare(other.score, score);
+            return byScore != 0 ? byScore : Long.compare(id, other.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Rank && compareTo((Rank) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(score) * 31 + Long.hashCode(id);
+        }
+    }
+}
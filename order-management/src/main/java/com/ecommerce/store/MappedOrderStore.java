@@ -0,0 +1,476 @@
+package com.ecommerce.store;
+
+import com.ecommerce.model.Order;
+import com.ecommerce.model.OrderItem;
+import com.ecommerce.model.OrderStatus;
+import com.ecommerce.model.OrderStatusListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * File-backed order store using memory-mapped files with fixed-size records.
+ *
+ * orders.dat: 64-byte header, then one 64-byte record per order
+ *   id(8) customerId(8) dateSeconds(8) dateNanos(4) itemCount(4)
+ *   firstItem(8) totalCents(8) status(1)
+ * items.dat: 64-byte header, then one 64-byte record per item
+ *   productId(8) priceCents(8) quantity(4) nameLength(2) name(42 UTF-8)
+ *   A longer name is kept in names.dat instead: nameLength is -1 and the
+ *   name field holds its offset(8) and length(4) there.
+ * names.dat: 64-byte header, then the UTF-8 bytes of the long names
+ *
+ * The status is a single byte, so a status change is one write that readers
+ * never see half done.
+ *
+ * The record count in each header is written after the record itself, so an
+ * append torn by a crashing process is simply not visible on reopen. Reopening
+ * only maps the files and reads the headers; accessors read straight from the
+ * mapped pages.
+ *
+ * Writes reach disk whenever the OS writes the pages back, in no particular
+ * order, so after an OS crash or power loss a header may count records that
+ * never reached disk. Only what {@link #flush()} has forced is durable.
+ *
+ * The store follows its orders as a listener: status changes are written in
+ * place, and when items change the order's items are written again as a new
+ * block (the old records stay unused) and the stored total is updated.
+ */
+public class MappedOrderStore implements OrderStatusListener, Closeable {
+    private static final int MAGIC_ORDERS = 0x4F4D534F; // "OMSO"
+    private static final int MAGIC_ITEMS = 0x4F4D5349;  // "OMSI"
+    private static final int MAGIC_NAMES = 0x4F4D534E;  // "OMSN"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int COUNT_OFFSET = 8;
+
+    private static final int ORDER_RECORD_SIZE = 64;
+    private static final int O_ID = 0;
+    private static final int O_CUSTOMER_ID = 8;
+    private static final int O_DATE_SECONDS = 16;
+    private static final int O_DATE_NANOS = 24;
+    private static final int O_ITEM_COUNT = 28;
+    private static final int O_FIRST_ITEM = 32;
+    private static final int O_TOTAL_CENTS = 40;
+    private static final int O_STATUS = 48;
+    private static final byte NO_STATUS = -1;
+
+    private static final int ITEM_RECORD_SIZE = 64;
+    private static final int I_PRODUCT_ID = 0;
+    private static final int I_PRICE_CENTS = 8;
+    private static final int I_QUANTITY = 16;
+    private static final int I_NAME_LENGTH = 20;
+    private static final int I_NAME = 22;
+    private static final int MAX_NAME_BYTES = ITEM_RECORD_SIZE - I_NAME;
+    private static final short SPILLED_NAME = -1;
+    private static final int I_NAME_OFFSET = I_NAME;
+    private static final int I_NAME_SPILLED_LENGTH = I_NAME + 8;
+
+    private static final long INITIAL_RECORDS = 4096;
+
+    // Stored status codes are indexes into this list, not enum ordinals,
+    // so the file survives reordering the enum; new statuses go at the end
+    private static final OrderStatus[] STORED_STATUSES = {
+        OrderStatus.PENDING, OrderStatus.CONFIRMED, OrderStatus.SHIPPED,
+        OrderStatus.DELIVERED, OrderStatus.CANCELLED
+    };
+    private static final byte[] STATUS_CODES = new byte[OrderStatus.values().length];
+
+    static {
+        if (STORED_STATUSES.length != OrderStatus.values().length) {
+            throw new IllegalStateException("Every order status needs a stored code");
+        }
+        for (int code = 0; code < STORED_STATUSES.length; code++) {
+            STATUS_CODES[STORED_STATUSES[code].ordinal()] = (byte) code;
+        }
+    }
+
+    private final MappedFile orders;
+    private final MappedFile items;
+    private final MappedFile names;
+    private Map<Long, Integer> rowById; // built lazily, guarded by this
+
+    private MappedOrderStore(MappedFile orders, MappedFile items, MappedFile names) {
+        this.orders = orders;
+        this.items = items;
+        this.names = names;
+    }
+
+    /**
+     * Opens (or creates) the store in the given directory.
+     */
+    public static MappedOrderStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        MappedFile orders = MappedFile.open(directory.resolve("orders.dat"), MAGIC_ORDERS, ORDER_RECORD_SIZE);
+        MappedFile items = null;
+        try {
+            items = MappedFile.open(directory.resolve("items.dat"), MAGIC_ITEMS, ITEM_RECORD_SIZE);
+            MappedFile names = MappedFile.open(directory.resolve("names.dat"), MAGIC_NAMES, 1);
+            return new MappedOrderStore(orders, items, names);
+        } catch (IOException | RuntimeException e) {
+            if (items != null) {
+                items.close();
+            }
+            orders.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends an order and its items, returning the order's row.
+     * Appending an order id that is already stored returns the existing row.
+     */
+    public synchronized int append(Order order) throws IOException {
+        Integer existing = rowIndex().get(order.getId());
+        if (existing != null) {
+            return existing;
+        }
+        List<OrderItem> orderItems = order.getItems();
+        long firstItem = appendItems(orderItems);
+
+        long row = orders.count();
+        ByteBuffer buf = orders.reserve(row);
+        int base = orders.offset(row);
+        LocalDateTime date = order.getOrderDate();
+        buf.putLong(base + O_ID, order.getId());
+        buf.putLong(base + O_CUSTOMER_ID, order.getCustomerId());
+        buf.putLong(base + O_DATE_SECONDS, date.toEpochSecond(ZoneOffset.UTC));
+        buf.putInt(base + O_DATE_NANOS, date.getNano());
+        buf.putInt(base + O_ITEM_COUNT, orderItems.size());
+        buf.putLong(base + O_FIRST_ITEM, firstItem);
+        buf.putLong(base + O_TOTAL_CENTS, order.getTotalCents());
+        writeStatus(buf, base, order.getStatus());
+        orders.publish(row + 1);
+
+        rowById.put(order.getId(), (int) row);
+        return (int) row;
+    }
+
+    @Override
+    public synchronized void onStatusChange(Order order, OrderStatus oldStatus, OrderStatus newStatus) {
+        Integer row = rowIndex().get(order.getId());
+        if (row != null) {
+            writeStatus(orders.buffer(), orders.offset(row), order.getStatus());
+        }
+    }
+
+    /**
+     * Writes the order's current items as a new block and points its row at them.
+     * @throws UncheckedIOException if the items file cannot grow
+     */
+    @Override
+    public synchronized void onTotalChange(Order order, long oldTotalCents, long newTotalCents) {
+        Integer row = rowIndex().get(order.getId());
+        if (row == null) {
+            return;
+        }
+        List<OrderItem> orderItems;
+        // Order changes its items under its own lock; copy them in one consistent state
+        synchronized (order) {
+            orderItems = new ArrayList<>(order.getItems());
+        }
+        long totalCents = 0;
+        for (OrderItem item : orderItems) {
+            totalCents += item.getLineTotalCents();
+        }
+        try {
+            long firstItem = appendItems(orderItems);
+            ByteBuffer buf = orders.buffer();
+            int base = orders.offset(row);
+            buf.putLong(base + O_FIRST_ITEM, firstItem);
+            buf.putInt(base + O_ITEM_COUNT, orderItems.size());
+            buf.putLong(base + O_TOTAL_CENTS, totalCents);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store items of order " + order.getId(), e);
+        }
+    }
+
+    // Called with the lock held; returns the index of the first item written
+    private long appendItems(List<OrderItem> orderItems) throws IOException {
+        long firstItem = items.count();
+        for (int i = 0; i < orderItems.size(); i++) {
+            items.reserve(firstItem + i);
+            writeItem(firstItem + i, orderItems.get(i));
+        }
+        items.publish(firstItem + orderItems.size());
+        return firstItem;
+    }
+
+    public int size() {
+        return (int) orders.count();
+    }
+
+    // Zero-copy accessors: read fields of a row straight from the mapped file
+
+    public long getId(int row) {
+        return orders.buffer().getLong(orders.offset(row) + O_ID);
+    }
+
+    public long getCustomerId(int row) {
+        return orders.buffer().getLong(orders.offset(row) + O_CUSTOMER_ID);
+    }
+
+    public long getTotalCents(int row) {
+        return orders.buffer().getLong(orders.offset(row) + O_TOTAL_CENTS);
+    }
+
+    public OrderStatus getStatus(int row) {
+        return readStatus(orders.buffer(), orders.offset(row));
+    }
+
+    public LocalDateTime getOrderDate(int row) {
+        ByteBuffer buf = orders.buffer();
+        int base = orders.offset(row);
+        return LocalDateTime.ofEpochSecond(buf.getLong(base + O_DATE_SECONDS), buf.getInt(base + O_DATE_NANOS), ZoneOffset.UTC);
+    }
+
+    /**
+     * Sum of all order totals in cents, scanned directly over the mapped records.
+     */
+    public long sumTotalCents() {
+        ByteBuffer buf = orders.buffer();
+        int n = size();
+        long sum = 0;
+        for (int row = 0; row < n; row++) {
+            sum += buf.getLong(orders.offset(row) + O_TOTAL_CENTS);
+        }
+        return sum;
+    }
+
+    /**
+     * Sum of totals in cents of orders placed at or after the cutoff.
+     */
+    public long sumTotalCentsSince(LocalDateTime cutoff) {
+        ByteBuffer buf = orders.buffer();
+        long cutoffSeconds = cutoff.toEpochSecond(ZoneOffset.UTC);
+        int cutoffNanos = cutoff.getNano();
+        int n = size();
+        long sum = 0;
+        for (int row = 0; row < n; row++) {
+            int base = orders.offset(row);
+            long seconds = buf.getLong(base + O_DATE_SECONDS);
+            if (seconds > cutoffSeconds || seconds == cutoffSeconds && buf.getInt(base + O_DATE_NANOS) >= cutoffNanos) {
+                sum += buf.getLong(base + O_TOTAL_CENTS);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Order count per status, scanned directly over the mapped records.
+     */
+    public Map<OrderStatus, Long> countByStatus() {
+        ByteBuffer buf = orders.buffer();
+        int n = size();
+        Map<OrderStatus, Long> counts = new EnumMap<>(OrderStatus.class);
+        for (int row = 0; row < n; row++) {
+            OrderStatus status = readStatus(buf, orders.offset(row));
+            if (status != null) {
+                counts.merge(status, 1L, Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Materializes the order stored at the given row.
+     */
+    public synchronized Order read(int row) {
+        ByteBuffer buf = orders.buffer();
+        int base = orders.offset(row);
+        int itemCount = buf.getInt(base + O_ITEM_COUNT);
+        long firstItem = buf.getLong(base + O_FIRST_ITEM);
+        List<OrderItem> orderItems = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            orderItems.add(readItem(firstItem + i));
+        }
+        return new Order(buf.getLong(base + O_ID), buf.getLong(base + O_CUSTOMER_ID), orderItems,
+                getOrderDate(row), readStatus(buf, base));
+    }
+
+    public List<Order> readAll() {
+        int n = size();
+        List<Order> result = new ArrayList<>(n);
+        for (int row = 0; row < n; row++) {
+            result.add(read(row));
+        }
+        return result;
+    }
+
+    /**
+     * Forces all appended records and status updates to disk.
+     */
+    public synchronized void flush() {
+        names.force();
+        items.force();
+        orders.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        names.close();
+        items.close();
+        orders.close();
+    }
+
+    private Map<Long, Integer> rowIndex() {
+        if (rowById == null) {
+            int n = size();
+            rowById = new HashMap<>(Math.max(16, n * 2));
+            for (int row = 0; row < n; row++) {
+                rowById.put(getId(row), row);
+            }
+        }
+        return rowById;
+    }
+
+    // Called with the lock held, after the item's record has been reserved
+    private void writeItem(long index, OrderItem item) throws IOException {
+        String productName = item.getProductName();
+        byte[] name = productName == null ? new byte[0] : productName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = items.buffer();
+        int base = items.offset(index);
+        buf.putLong(base + I_PRODUCT_ID, item.getProductId());
+        buf.putLong(base + I_PRICE_CENTS, item.getPriceCents());
+        buf.putInt(base + I_QUANTITY, item.getQuantity());
+        if (name.length <= MAX_NAME_BYTES) {
+            buf.putShort(base + I_NAME_LENGTH, (short) name.length);
+            buf.put(base + I_NAME, name);
+            return;
+        }
+        long offset = names.count();
+        if (name.length > 0) {
+            names.reserve(offset + name.length - 1);
+        }
+        names.buffer().put(names.offset(offset), name);
+        names.publish(offset + name.length);
+        buf.putShort(base + I_NAME_LENGTH, SPILLED_NAME);
+        buf.putLong(base + I_NAME_OFFSET, offset);
+        buf.putInt(base + I_NAME_SPILLED_LENGTH, name.length);
+    }
+
+    private OrderItem readItem(long index) {
+        ByteBuffer buf = items.buffer();
+        int base = items.offset(index);
+        short length = buf.getShort(base + I_NAME_LENGTH);
+        byte[] name;
+        if (length == SPILLED_NAME) {
+            name = new byte[buf.getInt(base + I_NAME_SPILLED_LENGTH)];
+            names.buffer().get(names.offset(buf.getLong(base + I_NAME_OFFSET)), name);
+        } else {
+            name = new byte[length];
+            buf.get(base + I_NAME, name);
+        }
+        return new OrderItem(buf.getLong(base + I_PRODUCT_ID), new String(name, StandardCharsets.UTF_8),
+                buf.getInt(base + I_QUANTITY), buf.getLong(base + I_PRICE_CENTS) / 100.0);
+    }
+
+    // One byte, so a concurrent reader sees either the old or the new status
+    private static void writeStatus(ByteBuffer buf, int base, OrderStatus status) {
+        buf.put(base + O_STATUS, status == null ? NO_STATUS : STATUS_CODES[status.ordinal()]);
+    }
+
+    private static OrderStatus readStatus(ByteBuffer buf, int base) {
+        byte code = buf.get(base + O_STATUS);
+        return code == NO_STATUS ? null : STORED_STATUSES[code];
+    }
+
+    /**
+     * One mapped file of fixed-size records behind a small header
+     * (magic, version, committed record count).
+     */
+    private static final class MappedFile implements Closeable {
+        private final FileChannel channel;
+        private final int recordSize;
+        private volatile MappedByteBuffer buffer;
+        private volatile long count;
+
+        private MappedFile(FileChannel channel, int recordSize, MappedByteBuffer buffer, long count) {
+            this.channel = channel;
+            this.recordSize = recordSize;
+            this.buffer = buffer;
+            this.count = count;
+        }
+
+        static MappedFile open(Path path, int magic, int recordSize) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                boolean fresh = channel.size() < HEADER_SIZE;
+                long capacity = Math.max(channel.size(), HEADER_SIZE + INITIAL_RECORDS * recordSize);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+                if (fresh) {
+                    buffer.putInt(0, magic);
+                    buffer.putInt(4, VERSION);
+                    buffer.putLong(COUNT_OFFSET, 0);
+                } else if (buffer.getInt(0) != magic || buffer.getInt(4) != VERSION) {
+                    throw new IOException("Not an order store file (bad magic/version): " + path);
+                }
+                return new MappedFile(channel, recordSize, buffer, buffer.getLong(COUNT_OFFSET));
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        long count() {
+            return count;
+        }
+
+        MappedByteBuffer buffer() {
+            return buffer;
+        }
+
+        int offset(long index) {
+            return Math.toIntExact(HEADER_SIZE + index * recordSize);
+        }
+
+        /**
+         * Makes sure the record at index is mapped, growing the mapping if needed.
+         */
+        ByteBuffer reserve(long index) throws IOException {
+            long required = HEADER_SIZE + (index + 1) * recordSize;
+            if (required > buffer.capacity()) {
+                long capacity = Math.min(Integer.MAX_VALUE, Math.max(required, 2L * buffer.capacity()));
+                if (required > capacity) {
+                    throw new IOException("Order store file is full");
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            }
+            return buffer;
+        }
+
+        /**
+         * Commits records up to newCount by writing the header count.
+         */
+        void publish(long newCount) {
+            buffer.putLong(COUNT_OFFSET, newCount);
+            count = newCount;
+        }
+
+        void force() {
+            buffer.force();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.ecommerce.store;
+
+import com.ecommerce.model.OrderStatus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of order lifecycle events.
+ *
+ * Records are 32 bytes: crc(4) type(1) pad(3) orderId(8) timestamp(8) value(8),
+ * with the CRC covering everything after it.
+ *
+ * {@link #append} returns once the event is on disk. Appends use group commit:
+ * the first waiting thread becomes the flush leader and writes and fsyncs every
+ * record buffered so far, so concurrent appenders share one flush.
+ * On open, a torn or corrupt tail left by a crash is truncated.
+ */
+public class OrderEventLog implements Closeable {
+    public enum EventType {
+        // Carries the ordinal of the status the order starts in (0, PENDING, in older logs)
+        CREATED(null),
+        INVENTORY_RESERVED(null),
+        PAID(OrderStatus.CONFIRMED),
+        SHIPPED(OrderStatus.SHIPPED),
+        CANCELLED(OrderStatus.CANCELLED);
+
+        private final OrderStatus resultingStatus;
+
+        EventType(OrderStatus resultingStatus) {
+            this.resultingStatus = resultingStatus;
+        }
+
+        /** Status the order moves to after this event, or null if the event does not change it */
+        public OrderStatus getResultingStatus() { return resultingStatus; }
+    }
+
+    public static final class Event {
+        private final EventType type;
+        private final long orderId;
+        private final long timestampMillis;
+        private final long value;
+
+        public Event(EventType type, long orderId, long timestampMillis, long value) {
+            this.type = type;
+            this.orderId = orderId;
+            this.timestampMillis = timestampMillis;
+            this.value = value;
+        }
+
+        public EventType getType() { return type; }
+        public long getOrderId() { return orderId; }
+        public long getTimestampMillis() { return timestampMillis; }
+        /** Event payload, e.g. the paid amount in cents for PAID */
+        public long getValue() { return value; }
+
+        @Override
+        public String toString() {
+            return "Event{" + type + ", orderId=" + orderId + ", value=" + value + "}";
+        }
+    }
+
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+    private static final int RECORD_SIZE = 32;
+    private static final int INITIAL_BUFFER_RECORDS = 256;
+
+    private final FileChannel channel;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+
+    // Guarded by lock
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_RECORDS * RECORD_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER_RECORDS * RECORD_SIZE);
+    private long appendedSeq;
+    private long durableSeq;
+    private boolean flushing;
+    private IOException failure;
+    private long flushCount;
+
+    private OrderEventLog(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens (or creates) the log, dropping any torn tail left by a crash.
+     */
+    public static OrderEventLog open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long validEnd = scan(channel, null);
+            if (validEnd < channel.size()) {
+                channel.truncate(validEnd);
+                channel.force(true);
+            }
+            channel.position(validEnd);
+            return new OrderEventLog(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public void append(EventType type, long orderId) throws IOException {
+        append(type, orderId, 0L);
+    }
+
+    /**
+     * Records a new order with the status it starts in, which replay begins from.
+     */
+    public void appendCreated(long orderId, OrderStatus initialStatus) throws IOException {
+        append(EventType.CREATED, orderId, initialStatus.ordinal());
+    }
+
+    /**
+     * Appends an event and blocks until it is durable.
+     */
+    public void append(EventType type, long orderId, long value) throws IOException {
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw new IOException("Event log is unusable after an earlier write failure", failure);
+            }
+            pending = ensureCapacity(pending);
+            encode(pending, type, orderId, System.currentTimeMillis(), value);
+            long seq = ++appendedSeq;
+
+            while (durableSeq < seq) {
+                if (failure != null) {
+                    throw new IOException("Event log write failed", failure);
+                }
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                } else {
+                    flushBatch();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of fsyncs issued so far; with group commit this grows slower than the number of appends.
+     */
+    public long getFlushCount() {
+        lock.lock();
+        try {
+            return flushCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with lock held; releases it while writing
+    private void flushBatch() {
+        flushing = true;
+        ByteBuffer batch = pending;
+        pending = spare;
+        long batchSeq = appendedSeq;
+        lock.unlock();
+        IOException error = null;
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            lock.lock();
+            flushing = false;
+            flushCount++;
+            if (error == null) {
+                durableSeq = batchSeq;
+            } else {
+                failure = error;
+            }
+            batch.clear();
+            spare = batch;
+            flushed.signalAll();
+        }
+    }
+
+    /**
+     * Reads every durable event in append order.
+     */
+    public void replay(Consumer<Event> consumer) throws IOException {
+        scan(channel, consumer);
+    }
+
+    /**
+     * Rebuilds the latest lifecycle status of every order seen in the log.
+     * Each order starts from the status its first CREATED event carries, or
+     * from PENDING if it has none. Later events are checked against the
+     * {@link OrderStatus} state machine; an event whose transition is not
+     * allowed from the status reached so far (e.g. PAID after CANCELLED) is ignored.
+     */
+    public Map<Long, OrderStatus> recoverStatuses() throws IOException {
+        Map<Long, OrderStatus> statuses = new HashMap<>();
+        replay(event -> {
+            if (event.getType() == EventType.CREATED) {
+                // An order registered again, e.g. after a restart, keeps the status it reached
+                statuses.putIfAbsent(event.getOrderId(), initialStatus(event));
+                return;
+            }
+            OrderStatus current = statuses.getOrDefault(event.getOrderId(), OrderStatus.PENDING);
+            OrderStatus status = event.getType().getResultingStatus();
+            if (status != null && current.canTransitionTo(status)) {
+                statuses.put(event.getOrderId(), status);
+            } else {
+                statuses.putIfAbsent(event.getOrderId(), current);
+            }
+        });
+        return statuses;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            while (flushing) {
+                flushed.awaitUninterruptibly();
+            }
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static OrderStatus initialStatus(Event created) {
+        long ordinal = created.getValue();
+        return ordinal >= 0 && ordinal < STATUSES.length ? STATUSES[(int) ordinal] : OrderStatus.PENDING;
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer) {
+        if (buffer.remaining() >= RECORD_SIZE) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    private static void encode(ByteBuffer buffer, EventType type, long orderId, long timestamp, long value) {
+        int start = buffer.position();
+        buffer.putInt(0);
+        buffer.put((byte) type.ordinal());
+        buffer.put((byte) 0).put((byte) 0).put((byte) 0);
+        buffer.putLong(orderId);
+        buffer.putLong(timestamp);
+        buffer.putLong(value);
+        buffer.putInt(start, checksum(buffer.array(), buffer.arrayOffset() + start));
+    }
+
+    private static int checksum(byte[] bytes, int recordStart) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, recordStart + 4, RECORD_SIZE - 4);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads valid records from the start of the file and returns the offset just after the last one.
+     */
+    private static long scan(FileChannel channel, Consumer<Event> consumer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1024);
+        long position = 0;
+        long size = channel.size();
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            while (buffer.remaining() >= RECORD_SIZE) {
+                int start = buffer.position();
+                int storedCrc = buffer.getInt(start);
+                int typeOrdinal = buffer.get(start + 4);
+                if (storedCrc != checksum(buffer.array(), start)
+                        || typeOrdinal < 0 || typeOrdinal >= EventType.values().length) {
+                    return position;
+                }
+                if (consumer != null) {
+                    consumer.accept(new Event(EventType.values()[typeOrdinal],
+                            buffer.getLong(start + 8), buffer.getLong(start + 16), buffer.getLong(start + 24)));
+                }
+                buffer.position(start + RECORD_SIZE);
+                position += RECORD_SIZE;
+            }
+            if (read < RECORD_SIZE) {
+                break;
+            }
+        }
+        return position;
+    }
+}
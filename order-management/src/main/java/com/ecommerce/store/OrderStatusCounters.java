@@ -0,0 +1,61 @@
+package com.ecommerce.store;
+
+import com.ecommerce.model.Order;
+import com.ecommerce.model.OrderStatus;
+import com.ecommerce.model.OrderStatusListener;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live order counts per status, updated on every transition.
+ * Each counter is a striped {@link LongAdder}, so concurrent transitions do not
+ * contend on a single cache line and reads are O(1) per status.
+ */
+public class OrderStatusCounters implements OrderStatusListener {
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    private final LongAdder[] counters = new LongAdder[STATUSES.length];
+
+    public OrderStatusCounters() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts a newly added order.
+     */
+    public void add(OrderStatus status) {
+        if (status != null) {
+            counters[status.ordinal()].increment();
+        }
+    }
+
+    @Override
+    public void onStatusChange(Order order, OrderStatus oldStatus, OrderStatus newStatus) {
+        if (oldStatus != null) {
+            counters[oldStatus.ordinal()].decrement();
+        }
+        add(newStatus);
+    }
+
+    public long count(OrderStatus status) {
+        return counters[status.ordinal()].sum();
+    }
+
+    /**
+     * Current count for every status that has at least one order.
+     */
+    public Map<OrderStatus, Long> snapshot() {
+        Map<OrderStatus, Long> result = new EnumMap<>(OrderStatus.class);
+        for (OrderStatus status : STATUSES) {
+            long count = counters[status.ordinal()].sum();
+            if (count > 0) {
+                result.put(status, count);
+            }
+        }
+        return result;
+    }
+}
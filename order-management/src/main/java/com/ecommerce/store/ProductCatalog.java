@@ -0,0 +1,139 @@
+package com.ecommerce.store;
+
+import com.ecommerce.model.Product;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Product catalog with price-ordered indexes, globally and per category.
+ *
+ * Indexes are concurrent skip lists keyed by (price, id), so a price range
+ * costs O(log n + k) and the top-N most expensive products are read off the
+ * end. Products are immutable in price; a price change is a {@link #put} of the
+ * new product, which moves it within the indexes but keeps its place in
+ * {@link #all()}.
+ */
+public class ProductCatalog {
+    private final ConcurrentNavigableMap<Long, Product> byId = new ConcurrentSkipListMap<>();
+    // Insertion order: each id keeps the position it was first added at
+    private final Map<Long, Long> positionById = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<Long, Product> byPosition = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextPosition = new AtomicLong();
+    private final ConcurrentNavigableMap<PriceKey, Product> byPrice = new ConcurrentSkipListMap<>();
+    private final Map<String, ConcurrentNavigableMap<PriceKey, Product>> byCategoryPrice = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a product, or replaces the product with the same id and re-indexes it.
+     */
+    public void put(Product product) {
+        byId.compute(product.getId(), (id, previous) -> {
+            PriceKey key = new PriceKey(product.getPrice(), id);
+            byPosition.put(positionById.computeIfAbsent(id, i -> nextPosition.getAndIncrement()), product);
+            // Insert the new entry before removing the old one so readers never miss the product
+            byPrice.put(key, product);
+            categoryIndex(product.getCategory()).put(key, product);
+            if (previous != null) {
+                PriceKey oldKey = new PriceKey(previous.getPrice(), id);
+                if (!oldKey.equals(key)) {
+                    byPrice.remove(oldKey);
+                }
+                if (!oldKey.equals(key) || !Objects.equals(previous.getCategory(), product.getCategory())) {
+                    categoryIndex(previous.getCategory()).remove(oldKey, previous);
+                }
+            }
+            return product;
+        });
+    }
+
+    public Optional<Product> findById(Long id) {
+        return Optional.ofNullable(byId.get(id));
+    }
+
+    /**
+     * All products, in the order they were first added.
+     */
+    public Collection<Product> all() {
+        return Collections.unmodifiableCollection(byPosition.values());
+    }
+
+    /**
+     * Products with min <= price <= max, cheapest first.
+     */
+    public List<Product> findInPriceRange(double min, double max) {
+        return rangeOf(byPrice, min, max);
+    }
+
+    public List<Product> findInPriceRange(String category, double min, double max) {
+        ConcurrentNavigableMap<PriceKey, Product> index = byCategoryPrice.get(category);
+        return index == null ? new ArrayList<>() : rangeOf(index, min, max);
+    }
+
+    /**
+     * The n most expensive products, most expensive first.
+     */
+    public List<Product> findMostExpensive(int n) {
+        return topOf(byPrice, n);
+    }
+
+    public List<Product> findMostExpensive(String category, int n) {
+        ConcurrentNavigableMap<PriceKey, Product> index = byCategoryPrice.get(category);
+        return index == null ? new ArrayList<>() : topOf(index, n);
+    }
+
+    public Optional<Product> findMostExpensive() {
+        Map.Entry<PriceKey, Product> last = byPrice.lastEntry();
+        return last == null ? Optional.empty() : Optional.of(last.getValue());
+    }
+
+    private ConcurrentNavigableMap<PriceKey, Product> categoryIndex(String category) {
+        return byCategoryPrice.computeIfAbsent(category == null ? "" : category, c -> new ConcurrentSkipListMap<>());
+    }
+
+    private static List<Product> rangeOf(ConcurrentNavigableMap<PriceKey, Product> index, double min, double max) {
+        if (min > max) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(index.subMap(
+                new PriceKey(min, Long.MIN_VALUE), true,
+                new PriceKey(max, Long.MAX_VALUE), true).values());
+    }
+
+    private static List<Product> topOf(ConcurrentNavigableMap<PriceKey, Product> index, int n) {
+        List<Product> result = new ArrayList<>(Math.max(0, Math.min(n, 64)));
+        Iterator<Product> it = index.descendingMap().values().iterator();
+        while (result.size() < n && it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    private static final class PriceKey implements Comparable<PriceKey> {
+        private final double price;
+        private final long id;
+
+        PriceKey(double price, long id) {
+            this.price = price;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(PriceKey other) {
+            int byPrice = Double.compare(price, other.price);
+            return byPrice != 0 ? byPrice : Long.compare(id, other.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PriceKey && compareTo((PriceKey) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(price) * 31 + Long.hashCode(id);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.ecommerce.store;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * Bounded-heap top-K selection: O(n log k) time and O(k) space instead of
+ * sorting the whole input. The collector's heaps merge, so it works with
+ * parallel streams.
+ */
+public final class TopK {
+    private TopK() {}
+
+    /**
+     * Collects the k greatest elements by the comparator, greatest first.
+     */
+    public static <T> Collector<T, ?, List<T>> greatest(int k, Comparator<? super T> comparator) {
+        Supplier<PriorityQueue<T>> supplier = () -> new PriorityQueue<>(Math.max(1, Math.min(k, 1024)), comparator);
+        BiConsumer<PriorityQueue<T>, T> accumulator = (heap, item) -> offer(heap, item, k, comparator);
+        BinaryOperator<PriorityQueue<T>> combiner = (left, right) -> {
+            for (T item : right) {
+                offer(left, item, k, comparator);
+            }
+            return left;
+        };
+        Function<PriorityQueue<T>, List<T>> finisher = heap -> {
+            List<T> result = new ArrayList<>(heap);
+            result.sort(comparator.reversed());
+            return result;
+        };
+        return Collector.of(supplier, accumulator, combiner, finisher);
+    }
+
+    // The heap is a min-heap of size <= k: its head is the weakest element kept so far
+    private static <T> void offer(PriorityQueue<T> heap, T item, int k, Comparator<? super T> comparator) {
+        if (k <= 0) {
+            return;
+        }
+        if (heap.size() < k) {
+            heap.add(item);
+        } else if (comparator.compare(item, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(item);
+        }
+    }
+}
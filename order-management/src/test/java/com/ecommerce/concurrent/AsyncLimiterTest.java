@@ -0,0 +1,97 @@
+package com.ecommerce.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncLimiterTest {
+
+    @Test
+    void queuesBeyondTheLimitAndAdmitsInArrivalOrder() {
+        AsyncLimiter limiter = new AsyncLimiter(1);
+        assertTrue(limiter.acquire().isDone());
+        CompletableFuture<Void> second = limiter.acquire();
+        CompletableFuture<Void> third = limiter.acquire();
+        assertFalse(second.isDone());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getWaiting());
+
+        limiter.release();
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+        assertEquals(1, limiter.getInFlight());
+
+        limiter.release();
+        assertTrue(third.isDone());
+        limiter.release();
+        assertEquals(0, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void cancelledWaiterGivesItsPlaceToTheNext() {
+        AsyncLimiter limiter = new AsyncLimiter(1);
+        limiter.acquire();
+        CompletableFuture<Void> cancelled = limiter.acquire();
+        CompletableFuture<Void> next = limiter.acquire();
+        cancelled.cancel(false);
+
+        limiter.release();
+
+        assertTrue(next.isDone());
+        assertFalse(next.isCancelled());
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(0, limiter.getWaiting());
+    }
+
+    @Test
+    void raisingTheLimitAdmitsWaitersAndLoweringItDrainsOnRelease() {
+        AsyncLimiter limiter = new AsyncLimiter(1);
+        limiter.acquire();
+        CompletableFuture<Void> waiting = limiter.acquire();
+
+        limiter.setLimit(2);
+        assertTrue(waiting.isDone());
+        assertEquals(2, limiter.getInFlight());
+
+        limiter.setLimit(1);
+        CompletableFuture<Void> queued = limiter.acquire();
+        limiter.release();
+        assertFalse(queued.isDone(), "still at the lowered limit");
+        limiter.release();
+        assertTrue(queued.isDone());
+    }
+
+    @Test
+    void synchronousContinuationsDoNotGrowTheStack() {
+        AsyncLimiter limiter = new AsyncLimiter(1);
+        int waiters = 100_000;
+        AtomicInteger completed = new AtomicInteger();
+        limiter.acquire();
+        List<CompletableFuture<Void>> chain = new ArrayList<>(waiters);
+        for (int i = 0; i < waiters; i++) {
+            // Each waiter finishes its work at once and releases on the releasing thread
+            chain.add(limiter.acquire().thenRun(() -> {
+                completed.incrementAndGet();
+                limiter.release();
+            }));
+        }
+
+        limiter.release();
+
+        assertEquals(waiters, completed.get());
+        assertEquals(0, limiter.getInFlight());
+        chain.forEach(future -> assertFalse(future.isCompletedExceptionally()));
+    }
+
+    @Test
+    void rejectsNonPositiveLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new AsyncLimiter(0));
+        assertThrows(IllegalArgumentException.class, () -> new AsyncLimiter(1).setLimit(-1));
+    }
+}
@@ -0,0 +1,107 @@
+package com.ecommerce.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedRingBufferTest {
+
+    @Test
+    void roundsCapacityUpToPowerOfTwo() {
+        assertEquals(8, new BoundedRingBuffer<>(5).capacity());
+        assertEquals(8, new BoundedRingBuffer<>(8).capacity());
+        assertEquals(2, new BoundedRingBuffer<>(1).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new BoundedRingBuffer<>(0));
+    }
+
+    @Test
+    void isFifoAndRefusesWhenFull() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        assertEquals(0, buffer.poll());
+        assertTrue(buffer.offer(4));
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, buffer.drainTo(drained, 10));
+        assertEquals(List.of(1, 2, 3, 4), drained);
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void timedOfferGivesUpWhileFull() throws InterruptedException {
+        BoundedRingBuffer<String> buffer = new BoundedRingBuffer<>(1);
+        buffer.put("a");
+        buffer.put("b");
+        assertFalse(buffer.offer("c", 20, TimeUnit.MILLISECONDS));
+        assertEquals("a", buffer.poll());
+        assertThrows(NullPointerException.class, () -> buffer.offer(null));
+    }
+
+    @Test
+    void deliversEveryElementExactlyOnceAcrossProducersAndConsumers() throws Exception {
+        int producers = 4;
+        int consumers = 4;
+        int perProducer = 50_000;
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(64);
+        ExecutorService executor = Executors.newFixedThreadPool(producers + consumers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger consumed = new AtomicInteger();
+        try {
+            for (int p = 0; p < producers; p++) {
+                int first = p * perProducer;
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = first; i < first + perProducer; i++) {
+                        buffer.put(i);
+                    }
+                    return null;
+                });
+            }
+            int total = producers * perProducer;
+            List<Future<List<Integer>>> taken = new ArrayList<>();
+            for (int c = 0; c < consumers; c++) {
+                taken.add(executor.submit(() -> {
+                    start.await();
+                    List<Integer> mine = new ArrayList<>();
+                    while (consumed.get() < total) {
+                        Integer element = buffer.poll();
+                        if (element == null) {
+                            Thread.onSpinWait();
+                        } else {
+                            mine.add(element);
+                            consumed.incrementAndGet();
+                        }
+                    }
+                    return mine;
+                }));
+            }
+            start.countDown();
+
+            Set<Integer> all = new HashSet<>();
+            for (Future<List<Integer>> future : taken) {
+                for (Integer element : future.get(30, TimeUnit.SECONDS)) {
+                    assertTrue(all.add(element), "duplicate " + element);
+                }
+            }
+            assertEquals(total, all.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.ecommerce.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SagaTest {
+    private final ExecutorService steps = Executors.newFixedThreadPool(4);
+    private final ExecutorService compensations = Executors.newFixedThreadPool(2);
+    private final List<String> undone = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        steps.shutdownNow();
+        compensations.shutdownNow();
+    }
+
+    @Test
+    void succeedsWithoutCompensating() {
+        Saga.Result result = new Saga("ok", steps, compensations)
+            .step("a", () -> { }, () -> undone.add("a"))
+            .step("b", () -> { }, () -> undone.add("b"), "a")
+            .execute();
+
+        assertTrue(result.isSuccess());
+        assertEquals(2, result.getCompletedSteps().size());
+        assertTrue(undone.isEmpty());
+    }
+
+    @Test
+    void compensatesDependentsBeforeTheStepsTheyDependOn() {
+        Saga.Result result = new Saga("order", steps, compensations)
+            .step("reserve", () -> { }, () -> undone.add("reserve"))
+            .step("pay", () -> { }, () -> undone.add("pay"), "reserve")
+            .step("label", () -> { }, () -> undone.add("label"), "pay")
+            .step("ship", () -> { throw new IllegalStateException("carrier down"); }, () -> undone.add("ship"), "label")
+            .execute();
+
+        assertFalse(result.isSuccess());
+        assertEquals("ship", result.getFailedStep());
+        assertEquals("carrier down", result.getFailure().getMessage());
+        assertEquals(List.of("label", "pay", "reserve"), undone);
+        assertEquals(List.of("label", "pay", "reserve"), result.getCompensatedSteps());
+    }
+
+    @Test
+    void skipsStepsAfterTheFailureAndCompensatesOnlyCompletedOnes() {
+        Saga.Result result = new Saga("partial", steps, compensations)
+            .step("a", () -> { }, () -> undone.add("a"))
+            .step("b", () -> { throw new IllegalStateException("no"); }, () -> undone.add("b"), "a")
+            .step("c", () -> fail("must not run after b failed"), () -> undone.add("c"), "b")
+            .execute();
+
+        assertEquals("b", result.getFailedStep());
+        assertEquals(List.of("a"), result.getCompletedSteps());
+        assertEquals(List.of("a"), undone);
+    }
+
+    @Test
+    void retriesACompensationUntilItSucceeds() {
+        AtomicInteger attempts = new AtomicInteger();
+        Saga.Result result = new Saga("retry", steps, compensations)
+            .step("refund", () -> { }, () -> {
+                if (attempts.incrementAndGet() < 3) {
+                    throw new IllegalStateException("gateway busy");
+                }
+            })
+            .step("fail", () -> { throw new IllegalStateException("no"); }, null, "refund")
+            .execute();
+
+        assertEquals(3, attempts.get());
+        assertEquals(List.of("refund"), result.getCompensatedSteps());
+        assertTrue(result.getCompensationFailures().isEmpty());
+    }
+
+    @Test
+    void reportsCompensationThatRunsOutOfAttempts() {
+        Saga.Result result = new Saga("broken", steps, compensations)
+            .compensationAttempts(2)
+            .step("refund", () -> { }, () -> { throw new IllegalStateException("gateway down"); })
+            .step("fail", () -> { throw new IllegalStateException("no"); }, null, "refund")
+            .execute();
+
+        assertTrue(result.getCompensatedSteps().isEmpty());
+        assertEquals("gateway down", result.getCompensationFailures().get("refund").getMessage());
+    }
+
+    @Test
+    void compensatesAnUncertainStepThatFailed() {
+        Saga.Result result = new Saga("timeout", steps, compensations)
+            .uncertainStep("pay", () -> { throw new DeadlineExceededException("cut off"); }, () -> undone.add("pay"))
+            .execute();
+
+        assertEquals("pay", result.getFailedStep());
+        assertEquals(List.of("pay"), undone);
+    }
+
+    @Test
+    void rejectsUndeclaredDependenciesAndDuplicateSteps() {
+        Saga saga = new Saga("invalid", steps, compensations).step("a", () -> { }, null);
+
+        assertThrows(IllegalArgumentException.class, () -> saga.step("a", () -> { }, null));
+        assertThrows(IllegalArgumentException.class, () -> saga.step("b", () -> { }, null, "missing"));
+    }
+}
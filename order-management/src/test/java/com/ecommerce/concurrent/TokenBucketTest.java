@@ -0,0 +1,75 @@
+package com.ecommerce.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    @Test
+    void allowsABurstThenRefuses() {
+        TokenBucket bucket = new TokenBucket("test", 1, 3);
+
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    void refillsAtTheConfiguredRate() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket("test", 20, 1);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        // One permit every 50ms
+        Thread.sleep(60);
+
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    void acquireSpacesPermitsOneIntervalApart() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket("test", 50, 1);
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            bucket.acquire();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // The first permit is immediate, the next five are 20ms apart
+        assertTrue(elapsedMillis >= 95, "took " + elapsedMillis + "ms");
+        assertTrue(elapsedMillis < 1_000, "took " + elapsedMillis + "ms");
+    }
+
+    @Test
+    void acquireFailsWhenInterrupted() {
+        TokenBucket bucket = new TokenBucket("test", 0.5, 1);
+        assertTrue(bucket.tryAcquire());
+
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, bucket::acquire);
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    void registryAcquiresOnlyRegisteredLimits() throws InterruptedException {
+        RateLimiterRegistry registry = new RateLimiterRegistry();
+        TokenBucket provider = registry.register("provider", 1, 1);
+
+        registry.acquire("provider", "unregistered");
+
+        assertFalse(provider.tryAcquire());
+        assertNull(registry.get("unregistered"));
+        assertEquals(1.0, provider.getRatePerSecond(), 1e-9);
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket("test", 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket("test", 1, 0));
+    }
+}
@@ -0,0 +1,121 @@
+package com.ecommerce.service;
+
+import com.ecommerce.concurrent.DependencyGuard;
+import com.ecommerce.concurrent.DependencyGuards;
+import com.ecommerce.concurrent.ExecutorRuntime.Dependency;
+import com.ecommerce.concurrent.RateLimiterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotificationOutboxTest {
+    @TempDir
+    Path directory;
+
+    private final DependencyGuard guard = new DependencyGuards().guard(Dependency.NOTIFICATION);
+    private final RecordingNotificationService provider = new RecordingNotificationService();
+
+    @Test
+    void truncatesTornTailOnOpenAndKeepsDelivering() throws Exception {
+        try (NotificationOutbox outbox = open()) {
+            outbox.enqueue(message("a"));
+            outbox.enqueue(message("b"));
+            awaitDelivered(outbox);
+        }
+        Path segment = onlySegment();
+        long intact = Files.size(segment);
+        // Part of a record, as left by a crash in the middle of a write
+        Files.write(segment, new byte[]{0, 0, 0, 42, 0, 0, 1, 0, 7}, StandardOpenOption.APPEND);
+
+        try (NotificationOutbox outbox = open()) {
+            assertEquals(intact, Files.size(segment));
+            outbox.enqueue(message("c"));
+            awaitDelivered(outbox);
+            assertTrue(outbox.isHealthy());
+        }
+
+        assertEquals(List.of("a@example.com", "b@example.com", "c@example.com"), provider.recipients());
+    }
+
+    @Test
+    void deliversMessagesLeftOverFromAnEarlierRun() throws Exception {
+        provider.down = true;
+        try (NotificationOutbox outbox = open()) {
+            outbox.enqueue(message("a"));
+            outbox.enqueue(message("b"));
+            assertEquals(2, outbox.getPendingCount());
+        }
+        assertTrue(provider.recipients().isEmpty());
+
+        provider.down = false;
+        try (NotificationOutbox outbox = open()) {
+            awaitDelivered(outbox);
+            assertEquals(2, outbox.getDeliveredCount());
+        }
+
+        assertEquals(List.of("a@example.com", "b@example.com"), provider.recipients());
+    }
+
+    @Test
+    void refusesMessagesAfterClose() throws Exception {
+        NotificationOutbox outbox = open();
+        outbox.close();
+
+        assertThrows(IOException.class, () -> outbox.enqueue(message("a")));
+    }
+
+    private NotificationOutbox open() throws IOException {
+        return NotificationOutbox.open(directory, provider, guard, new RateLimiterRegistry());
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.filter(path -> path.toString().endsWith(".seg")).toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+
+    private static EmailMessage message(String user) {
+        return new EmailMessage(user + "@example.com", "Order update", "Your order has shipped");
+    }
+
+    private static void awaitDelivered(NotificationOutbox outbox) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (outbox.getPendingCount() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "still pending: " + outbox);
+            Thread.sleep(10);
+        }
+    }
+
+    /** Accepts every message at once, or fails every call while down */
+    private static class RecordingNotificationService extends NotificationService {
+        private final List<EmailMessage> sent = new CopyOnWriteArrayList<>();
+        volatile boolean down;
+
+        @Override
+        public List<Boolean> sendEmailBatch(List<EmailMessage> messages) {
+            if (down) {
+                throw new IllegalStateException("provider unavailable");
+            }
+            sent.addAll(messages);
+            List<Boolean> results = new ArrayList<>(messages.size());
+            messages.forEach(message -> results.add(true));
+            return results;
+        }
+
+        List<String> recipients() {
+            return sent.stream().map(EmailMessage::getTo).toList();
+        }
+    }
+}
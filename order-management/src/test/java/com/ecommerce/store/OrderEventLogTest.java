@@ -0,0 +1,125 @@
+package com.ecommerce.store;
+
+import com.ecommerce.model.OrderStatus;
+import com.ecommerce.store.OrderEventLog.Event;
+import com.ecommerce.store.OrderEventLog.EventType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OrderEventLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysEventsInAppendOrderAfterReopen() throws IOException {
+        Path path = directory.resolve("events.log");
+        try (OrderEventLog log = OrderEventLog.open(path)) {
+            log.append(EventType.CREATED, 1);
+            log.append(EventType.PAID, 1, 2_500);
+            log.append(EventType.CREATED, 2);
+        }
+
+        List<Event> events = new ArrayList<>();
+        try (OrderEventLog log = OrderEventLog.open(path)) {
+            log.replay(events::add);
+        }
+
+        assertEquals(3, events.size());
+        assertEquals(EventType.CREATED, events.get(0).getType());
+        assertEquals(EventType.PAID, events.get(1).getType());
+        assertEquals(2_500, events.get(1).getValue());
+        assertEquals(2L, events.get(2).getOrderId());
+    }
+
+    @Test
+    void dropsTornTailOnOpenAndKeepsAppending() throws IOException {
+        Path path = directory.resolve("events.log");
+        try (OrderEventLog log = OrderEventLog.open(path)) {
+            log.append(EventType.CREATED, 1);
+            log.append(EventType.CREATED, 2);
+        }
+        long intact = Files.size(path);
+        // Half a record, as left by a crash in the middle of a write
+        Files.write(path, new byte[16], StandardOpenOption.APPEND);
+
+        List<Event> events = new ArrayList<>();
+        try (OrderEventLog log = OrderEventLog.open(path)) {
+            assertEquals(intact, Files.size(path));
+            log.append(EventType.CREATED, 3);
+            log.replay(events::add);
+        }
+
+        assertEquals(List.of(1L, 2L, 3L), events.stream().map(Event::getOrderId).toList());
+    }
+
+    @Test
+    void stopsReplayAtCorruptRecord() throws IOException {
+        Path path = directory.resolve("events.log");
+        try (OrderEventLog log = OrderEventLog.open(path)) {
+            log.append(EventType.CREATED, 1);
+            log.append(EventType.CREATED, 2);
+            log.append(EventType.CREATED, 3);
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        // Flip a bit in the order id of the second record
+        bytes[32 + 8] ^= 1;
+        Files.write(path, bytes);
+
+        List<Event> events = new ArrayList<>();
+        try (OrderEventLog log = OrderEventLog.open(path)) {
+            log.replay(events::add);
+        }
+
+        assertEquals(List.of(1L), events.stream().map(Event::getOrderId).toList());
+    }
+
+    @Test
+    void recoverStatusesIgnoresTransitionsTheStateMachineForbids() throws IOException {
+        try (OrderEventLog log = OrderEventLog.open(directory.resolve("events.log"))) {
+            log.append(EventType.CREATED, 1);
+            log.append(EventType.CANCELLED, 1);
+            log.append(EventType.PAID, 1);
+            log.append(EventType.CREATED, 2);
+            log.append(EventType.INVENTORY_RESERVED, 2);
+            log.append(EventType.PAID, 2);
+            log.append(EventType.CREATED, 3);
+            log.append(EventType.SHIPPED, 3);
+
+            Map<Long, OrderStatus> statuses = log.recoverStatuses();
+
+            assertEquals(OrderStatus.CANCELLED, statuses.get(1L));
+            assertEquals(OrderStatus.CONFIRMED, statuses.get(2L));
+            assertEquals(OrderStatus.PENDING, statuses.get(3L));
+        }
+    }
+
+    @Test
+    void recoverStatusesStartsFromTheStatusAnOrderWasCreatedIn() throws IOException {
+        try (OrderEventLog log = OrderEventLog.open(directory.resolve("events.log"))) {
+            log.appendCreated(1, OrderStatus.CONFIRMED);
+            log.append(EventType.SHIPPED, 1);
+            log.appendCreated(2, OrderStatus.SHIPPED);
+            log.append(EventType.PAID, 2);
+            // Registered again after a restart: the first CREATED still decides
+            log.appendCreated(2, OrderStatus.PENDING);
+            log.appendCreated(3, OrderStatus.CONFIRMED);
+            log.append(EventType.CANCELLED, 3);
+
+            Map<Long, OrderStatus> statuses = log.recoverStatuses();
+
+            assertEquals(OrderStatus.SHIPPED, statuses.get(1L));
+            assertEquals(OrderStatus.SHIPPED, statuses.get(2L));
+            assertEquals(OrderStatus.CANCELLED, statuses.get(3L));
+        }
+    }
+}